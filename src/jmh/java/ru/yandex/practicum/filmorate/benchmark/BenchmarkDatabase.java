@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.CatalogVersions;
+import ru.yandex.practicum.filmorate.storage.Dao.EventJournal;
+import ru.yandex.practicum.filmorate.storage.Dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.Dao.GenreDaoStorage;
+import ru.yandex.practicum.filmorate.storage.Dao.MpaDaoStorage;
+import ru.yandex.practicum.filmorate.storage.Dao.QueryMetrics;
+import ru.yandex.practicum.filmorate.storage.Dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// встроенная база H2 с данными DatasetGenerator: rows - примерное число строк в таблицах LIKES и FRIENDSHIP,
+// пользователей и фильмов в 10 раз меньше, у пользователя в среднем 10 друзей и 10 отметок нравится
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+    static final int PER_USER = 10; // среднее число друзей и отметок нравится у одного пользователя
+    static final int FETCH_SIZE = 500; // строк за одно обращение к базе при потоковой выдаче
+    private static final long SEED = 42; // одинаковые данные при каждом запуске
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    int users;
+    int films;
+    HikariDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    QueryMetrics queryMetrics;
+    ReferenceDataCache referenceData;
+    CatalogVersions versions;
+    FilmDbStorage filmDbStorage;
+    UserDbStorage userDbStorage;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void setUp() {
+        quietLogging();
+        users = Math.max(rows / PER_USER, PER_USER + 1);
+        films = users;
+        dataSource = new HikariDataSource(); // пул соединений, как в приложении
+        dataSource.setJdbcUrl("jdbc:h2:mem:benchmark" + rows + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        new DatasetGenerator(dataSource, users, films, PER_USER, PER_USER, SEED).generate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        queryMetrics = new QueryMetrics(new SimpleMeterRegistry());
+        versions = new CatalogVersions();
+        referenceData = new ReferenceDataCache(new GenreDaoStorage(jdbcTemplate, queryMetrics),
+                new MpaDaoStorage(jdbcTemplate, queryMetrics), versions);
+        referenceData.refresh();
+        EventJournal eventJournal = new EventJournal(false, "", 0); // журналы событий проверяет RecoveryBenchmark
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, queryMetrics, referenceData, referenceData, eventJournal,
+                versions, FETCH_SIZE);
+        filmDbStorage.init();
+        userDbStorage = new UserDbStorage(jdbcTemplate, queryMetrics, eventJournal, filmDbStorage, FETCH_SIZE);
+        userDbStorage.init();
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.close();
+    }
+
+    long randomUserId() {
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+
+    long randomFilmId() {
+        return ThreadLocalRandom.current().nextInt(films) + 1;
+    }
+
+    static void quietLogging() { // журнал DEBUG без конфигурации Spring Boot искажает замеры
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+}
@@ -0,0 +1,227 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// генератор данных в схеме приложения: популярность фильмов и число подписчиков пользователей распределены
+// по закону Ципфа, число отметок нравится и друзей у пользователя - по степенному закону со средним значением
+// likesPerUser и friendsPerUser; строки вставляются пакетами с фиксацией транзакции после каждого пакета
+public class DatasetGenerator {
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final double ZIPF_EXPONENT = 1.0;
+    private static final double POWER_LAW_ALPHA = 2.5; // показатель степенного закона для числа связей
+    private static final int GENRES = 6;
+    private static final int MPA = 5;
+    private static final String[] WORDS = {"love", "war", "city", "night", "dream", "road", "secret", "last",
+            "summer", "ghost", "king", "river", "star", "silent", "lost", "dark", "home", "winter", "game", "sea"};
+    private static final String SQL_INSERT_USER =
+            "INSERT INTO users (name, login, email, birthday) VALUES (?, ?, ?, ?)";
+    private static final String SQL_INSERT_FILM =
+            "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_INSERT_FILM_GENRE = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+    private static final String SQL_INSERT_LIKE = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+    private static final String SQL_INSERT_FRIEND = "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)";
+    private static final String SQL_UPDATE_LIKES_COUNT = "UPDATE films f " +
+            "SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)";
+
+    private final DataSource dataSource;
+    private final int users;
+    private final int films;
+    private final int likesPerUser;
+    private final int friendsPerUser;
+    private final Random random;
+
+    public DatasetGenerator(DataSource dataSource, int users, int films, int likesPerUser, int friendsPerUser,
+                            long seed) {
+        this.dataSource = dataSource;
+        this.users = users;
+        this.films = films;
+        this.likesPerUser = likesPerUser;
+        this.friendsPerUser = friendsPerUser;
+        this.random = new Random(seed);
+    }
+
+    // пересоздать схему и заполнить ее, возвращает число вставленных отметок нравится и дружб
+    public long[] generate() {
+        createSchema();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            insertUsers(connection);
+            insertFilms(connection);
+            long likes = insertLikes(connection);
+            long friendships = insertFriends(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(SQL_UPDATE_LIKES_COUNT);
+                statement.execute("ANALYZE");
+            }
+            connection.commit();
+            return new long[]{likes, friendships};
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось заполнить базу данных", e);
+        }
+    }
+
+    private void createSchema() { // справочники из основного data.sql рядом со schema.sql, без тестовых данных
+        try {
+            Resource schema = new UrlResource(new ClassPathResource("schema.sql").getURL());
+            new ResourceDatabasePopulator(schema, schema.createRelative("data.sql")).execute(dataSource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void insertUsers(Connection connection) throws SQLException {
+        try (Batch batch = new Batch(connection, SQL_INSERT_USER)) {
+            LocalDate first = LocalDate.of(1950, 1, 1);
+            for (int i = 1; i <= users; i++) {
+                batch.add("user" + i, "login" + i, "user" + i + "@example.com",
+                        Date.valueOf(first.plusDays(random.nextInt(60 * 365))));
+            }
+        }
+    }
+
+    private void insertFilms(Connection connection) throws SQLException {
+        LocalDate first = LocalDate.of(1920, 1, 1);
+        try (Batch batch = new Batch(connection, SQL_INSERT_FILM)) {
+            for (int i = 1; i <= films; i++) {
+                batch.add("Film " + i + " " + words(2), words(5 + random.nextInt(15)),
+                        Date.valueOf(first.plusDays(random.nextInt(104 * 365))), 60 + random.nextInt(140),
+                        1 + random.nextInt(MPA));
+            }
+        }
+        try (Batch batch = new Batch(connection, SQL_INSERT_FILM_GENRE)) {
+            for (int film = 1; film <= films; film++) {
+                int genre = random.nextInt(GENRES);
+                int count = 1 + random.nextInt(3); // от одного до трех жанров
+                for (int i = 0; i < count; i++) {
+                    batch.add(film, (genre + i) % GENRES + 1);
+                }
+            }
+        }
+    }
+
+    private long insertLikes(Connection connection) throws SQLException {
+        ZipfSampler popularity = new ZipfSampler(films, ZIPF_EXPONENT, random);
+        try (Batch batch = new Batch(connection, SQL_INSERT_LIKE)) {
+            for (int user = 1; user <= users; user++) {
+                for (int film : distinct(popularity, powerLaw(likesPerUser, films / 10), 0)) {
+                    batch.add(film, user);
+                }
+            }
+            return batch.total;
+        }
+    }
+
+    private long insertFriends(Connection connection) throws SQLException {
+        ZipfSampler popularity = new ZipfSampler(users, ZIPF_EXPONENT, random);
+        try (Batch batch = new Batch(connection, SQL_INSERT_FRIEND)) {
+            for (int user = 1; user <= users; user++) {
+                for (int friend : distinct(popularity, powerLaw(friendsPerUser, users / 10), user)) {
+                    batch.add(user, friend);
+                }
+            }
+            return batch.total;
+        }
+    }
+
+    private Set<Integer> distinct(ZipfSampler sampler, int count, int excluded) { // count различных идентификаторов
+        Set<Integer> ids = new HashSet<>();
+        while (ids.size() < count) {
+            int id = sampler.sample(random);
+            if (id != excluded) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    // дискретное распределение Парето с заданным средним: большинство значений невелико, редкие - в десятки раз больше
+    private int powerLaw(int mean, int max) {
+        double min = mean * (POWER_LAW_ALPHA - 2) / (POWER_LAW_ALPHA - 1);
+        double value = min * Math.pow(1 - random.nextDouble(), -1 / (POWER_LAW_ALPHA - 1));
+        return (int) Math.max(0, Math.min(max, Math.round(value)));
+    }
+
+    private String words(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static class Batch implements AutoCloseable { // пакетная вставка строк одного запроса
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private int size;
+        private long total;
+
+        private Batch(Connection connection, String sql) throws SQLException {
+            this.connection = connection;
+            this.statement = connection.prepareStatement(sql);
+        }
+
+        private void add(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+            statement.addBatch();
+            total++;
+            if (++size == INSERT_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            statement.executeBatch();
+            connection.commit();
+            size = 0;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (size > 0) {
+                flush();
+            }
+            statement.close();
+        }
+    }
+
+    // запуск: --url=jdbc:h2:file:./target/loadtest/filmorate --users=1000000 --films=100000 --likes=20 --friends=15
+    public static void main(String[] args) {
+        Map<String, String> options = Options.parse(args);
+        BenchmarkDatabase.quietLogging();
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl(options.getOrDefault("url", "jdbc:h2:file:./target/loadtest/filmorate"));
+            dataSource.setUsername(options.getOrDefault("username", "sa"));
+            dataSource.setPassword(options.getOrDefault("password", "password"));
+            DatasetGenerator generator = new DatasetGenerator(dataSource,
+                    Integer.parseInt(options.getOrDefault("users", "1000000")),
+                    Integer.parseInt(options.getOrDefault("films", "100000")),
+                    Integer.parseInt(options.getOrDefault("likes", "20")),
+                    Integer.parseInt(options.getOrDefault("friends", "15")),
+                    Long.parseLong(options.getOrDefault("seed", "42")));
+            long start = System.nanoTime();
+            long[] rows = generator.generate();
+            System.out.printf("Пользователей: %d, фильмов: %d, отметок нравится: %d, дружб: %d, время: %d с%n",
+                    generator.users, generator.films, rows[0], rows[1], (System.nanoTime() - start) / 1_000_000_000);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FilmDbStorageBenchmark {
+
+    @Benchmark
+    public Collection<Film> getPopular(BenchmarkDatabase db) {
+        return db.filmDbStorage.getPopular(10);
+    }
+
+    @Benchmark
+    public Collection<Film> getPopularByGenre(BenchmarkDatabase db) {
+        return db.filmDbStorage.getPopular(10, 3, null);
+    }
+
+    @Benchmark
+    public Collection<Film> getPopularByGenreAndYear(BenchmarkDatabase db) {
+        return db.filmDbStorage.getPopular(10, 3, 1975);
+    }
+
+    @Benchmark
+    public List<FilmSuggestion> suggest(BenchmarkDatabase db) { // префикс общий для каждого десятого фильма
+        return db.filmDbStorage.suggest("film 1", 10);
+    }
+
+    @Benchmark
+    public Film getById(BenchmarkDatabase db) {
+        return db.filmDbStorage.getById(db.randomFilmId());
+    }
+
+    @Benchmark
+    public boolean addLike(BenchmarkDatabase db) { // повторные отметки тоже учитываются, как в настоящей нагрузке
+        return db.filmDbStorage.addLike(db.randomFilmId(), db.randomUserId());
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// те же объемы, что и в BenchmarkDatabase: rows отметок нравится на rows / 10 фильмов
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class InMemoryFilmStorageBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private InMemoryFilmStorage storage;
+    private int films;
+    private int users;
+
+    @Setup
+    public void setUp() {
+        BenchmarkDatabase.quietLogging();
+        films = Math.max(rows / BenchmarkDatabase.PER_USER, BenchmarkDatabase.PER_USER + 1);
+        users = films;
+        storage = new InMemoryFilmStorage();
+        LocalDate firstRelease = LocalDate.of(1900, 1, 1);
+        for (int i = 1; i <= films; i++) {
+            storage.create(Film.builder()
+                    .name("film" + i)
+                    .description("description" + i)
+                    .releaseDate(firstRelease.plusDays(i))
+                    .duration(90 + i % 90)
+                    .mpa(new Mpa(i % 5 + 1, null))
+                    .build());
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            double x = random.nextDouble();
+            storage.addLike((long) (films * x * x * x) + 1, (long) random.nextInt(users) + 1);
+        }
+    }
+
+    @Benchmark
+    public Collection<Film> getPopular() {
+        return storage.getPopular(10);
+    }
+
+    @Benchmark
+    public boolean addLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return storage.addLike((long) random.nextInt(films) + 1, (long) random.nextInt(users) + 1);
+    }
+}
@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// нагрузочный тест запущенного приложения: потоки в замкнутом цикле выполняют запросы к REST API в заданной
+// пропорции, после прогрева записывается время ответа; в конце печатаются пропускная способность и процентили
+public class LoadDriver {
+    private static final String DEFAULT_MIX = "popular=30,film=25,films_page=5,user=10,friends=10," +
+            "common_friends=10,like=7,unlike=2,add_friend=1";
+
+    enum Operation { // вызовы FilmController и UserController
+        POPULAR("GET", (r, c) -> "/films/popular?count=10"),
+        FILM("GET", (r, c) -> "/films/" + c.film(r)),
+        FILMS_PAGE("GET", (r, c) -> "/films?limit=100&after=" + r.nextInt(c.films)),
+        USER("GET", (r, c) -> "/users/" + c.user(r)),
+        FRIENDS("GET", (r, c) -> "/users/" + c.user(r) + "/friends"),
+        COMMON_FRIENDS("GET", (r, c) -> "/users/" + c.user(r) + "/friends/common/" + c.user(r)),
+        LIKE("PUT", (r, c) -> "/films/" + c.film(r) + "/like/" + c.user(r)),
+        UNLIKE("DELETE", (r, c) -> "/films/" + c.film(r) + "/like/" + c.user(r)),
+        ADD_FRIEND("PUT", (r, c) -> "/users/" + c.user(r) + "/friends/" + c.user(r));
+
+        private final String method;
+        private final PathFactory path;
+
+        Operation(String method, PathFactory path) {
+            this.method = method;
+            this.path = path;
+        }
+    }
+
+    interface PathFactory {
+        String path(Random random, LoadDriver driver);
+    }
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final int users;
+    private final int films;
+    private final ZipfSampler filmPopularity; // чтение фильмов смещено к популярным, как и отметки нравится
+    private final Operation[] operations;
+    private final double[] cumulativeWeights;
+
+    LoadDriver(String baseUrl, int users, int films, Map<Operation, Integer> mix) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.films = films;
+        this.filmPopularity = new ZipfSampler(films, 1.0, new Random(42));
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new double[operations.length];
+        double total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        double sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += mix.get(operations[i]) / total;
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    long user(Random random) {
+        return random.nextInt(users) + 1;
+    }
+
+    long film(Random random) {
+        return filmPopularity.sample(random);
+    }
+
+    Result run(int threads, Duration warmup, Duration duration) throws Exception {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long stopAt = measureFrom + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> work(measureFrom, stopAt)));
+        }
+        Result result = new Result();
+        for (Future<Result> worker : workers) {
+            result.merge(worker.get());
+        }
+        executor.shutdown();
+        return result;
+    }
+
+    private Result work(long measureFrom, long stopAt) {
+        Random random = ThreadLocalRandom.current();
+        Result result = new Result();
+        long now;
+        while ((now = System.nanoTime()) < stopAt) {
+            Operation operation = next(random);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + operation.path.path(random, this)))
+                    .method(operation.method, HttpRequest.BodyPublishers.noBody())
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+            boolean failed;
+            try {
+                failed = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 500;
+            } catch (Exception e) {
+                failed = true;
+            }
+            if (now >= measureFrom) {
+                result.record(operation, System.nanoTime() - now, failed);
+            }
+        }
+        return result;
+    }
+
+    private Operation next(Random random) {
+        int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+        return operations[Math.min(index < 0 ? -index - 1 : index, operations.length - 1)];
+    }
+
+    static class Result { // время ответа в наносекундах по каждой операции
+        private final Map<Operation, long[]> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+        private final Map<Operation, Integer> errors = new EnumMap<>(Operation.class);
+
+        void record(Operation operation, long nanos, boolean failed) {
+            int count = counts.getOrDefault(operation, 0);
+            long[] values = latencies.computeIfAbsent(operation, o -> new long[1024]);
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+                latencies.put(operation, values);
+            }
+            values[count] = nanos;
+            counts.put(operation, count + 1);
+            if (failed) {
+                errors.merge(operation, 1, Integer::sum);
+            }
+        }
+
+        void merge(Result other) {
+            other.counts.forEach((operation, count) -> {
+                long[] values = other.latencies.get(operation);
+                for (int i = 0; i < count; i++) {
+                    record(operation, values[i], false);
+                }
+            });
+            other.errors.forEach((operation, count) -> errors.merge(operation, count, Integer::sum));
+        }
+
+        void print(Duration duration) {
+            System.out.printf("%-16s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                    "operation", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms");
+            long[] all = new long[0];
+            for (Operation operation : counts.keySet()) {
+                long[] values = Arrays.copyOf(latencies.get(operation), counts.get(operation));
+                print(operation.name().toLowerCase(), values, errors.getOrDefault(operation, 0), duration);
+                all = concat(all, values);
+            }
+            print("total", all, errors.values().stream().mapToInt(Integer::intValue).sum(), duration);
+        }
+
+        private static void print(String name, long[] values, int errors, Duration duration) {
+            Arrays.sort(values);
+            System.out.printf("%-16s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, values.length, errors,
+                    values.length * 1000.0 / duration.toMillis(), percentile(values, 0.5), percentile(values, 0.95),
+                    percentile(values, 0.99), percentile(values, 0.999), percentile(values, 1));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+        private static long[] concat(long[] first, long[] second) {
+            long[] result = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, result, first.length, second.length);
+            return result;
+        }
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) { // пропорции вида popular=30,film=25
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    // запуск: --url=http://localhost:8080 --users=1000000 --films=100000 --threads=16 --warmup=30 --duration=120
+    // --mix=popular=30,film=25,...
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = Options.parse(args);
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        LoadDriver driver = new LoadDriver(options.getOrDefault("url", "http://localhost:8080"),
+                Integer.parseInt(options.getOrDefault("users", "1000000")),
+                Integer.parseInt(options.getOrDefault("films", "100000")),
+                parseMix(options.getOrDefault("mix", DEFAULT_MIX)));
+        Result result = driver.run(Integer.parseInt(options.getOrDefault("threads", "16")),
+                Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10"))), duration);
+        result.print(duration);
+    }
+}
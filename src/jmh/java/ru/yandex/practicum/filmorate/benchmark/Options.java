@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class Options { // разбор аргументов командной строки вида --name=value
+    private Options() {
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Ожидается аргумент вида --name=value: " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import ru.yandex.practicum.filmorate.storage.Dao.EventJournal;
+import ru.yandex.practicum.filmorate.storage.Dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.Dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.EventLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// время построения рейтинга популярности и графа дружбы при запуске: запросами к базе или из журнала событий
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024 / EventLog.RECORD_SIZE * EventLog.RECORD_SIZE;
+
+    @Param({"false", "true"})
+    public boolean eventLog;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) throws IOException {
+        directory = Files.createTempDirectory("filmorate-events");
+        if (eventLog) { // первый запуск строит индексы запросами и записывает контрольные точки
+            start(db).close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public EventJournal startup(BenchmarkDatabase db) {
+        return start(db);
+    }
+
+    private EventJournal start(BenchmarkDatabase db) {
+        EventJournal journal = new EventJournal(eventLog, directory.toString(), SEGMENT_BYTES);
+        FilmDbStorage filmDbStorage = new FilmDbStorage(db.jdbcTemplate, db.queryMetrics, db.referenceData,
+                db.referenceData, journal, db.versions, BenchmarkDatabase.FETCH_SIZE);
+        filmDbStorage.init();
+        new UserDbStorage(db.jdbcTemplate, db.queryMetrics, journal, filmDbStorage,
+                BenchmarkDatabase.FETCH_SIZE).init();
+        return journal;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+// время запуска хранилища фильмов в памяти: загрузка двоичного снимка против повторного импорта из JSON;
+// rows отметок нравится на rows / 10 фильмов, как в InMemoryFilmStorageBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SnapshotBenchmark {
+    private static final TypeReference<List<Film>> FILMS = new TypeReference<>() {
+    };
+    private static final TypeReference<Map<Long, long[]>> LIKES = new TypeReference<>() {
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkDatabase.quietLogging();
+        directory = Files.createTempDirectory("filmorate-snapshot");
+        int films = Math.max(rows / BenchmarkDatabase.PER_USER, BenchmarkDatabase.PER_USER + 1);
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        LocalDate firstRelease = LocalDate.of(1900, 1, 1);
+        for (int i = 1; i <= films; i++) {
+            storage.create(Film.builder()
+                    .name("film" + i)
+                    .description("description" + i)
+                    .releaseDate(firstRelease.plusDays(i))
+                    .duration(90 + i % 90)
+                    .mpa(new Mpa(i % 5 + 1, null))
+                    .build());
+        }
+        Random random = new Random(42);
+        Map<Long, Set<Long>> likes = new TreeMap<>();
+        for (int i = 0; i < rows; i++) {
+            double x = random.nextDouble();
+            long filmId = (long) (films * x * x * x) + 1;
+            long userId = (long) random.nextInt(films) + 1;
+            storage.addLike(filmId, userId);
+            likes.computeIfAbsent(filmId, id -> new TreeSet<>()).add(userId);
+        }
+        storage.writeSnapshot(directory.resolve("films.snapshot"));
+        mapper.writeValue(directory.resolve("films.json").toFile(), storage.findAll());
+        mapper.writeValue(directory.resolve("likes.json").toFile(), likes);
+        System.out.printf("%nСнимок: %d байт, JSON: %d байт%n", Files.size(directory.resolve("films.snapshot")),
+                Files.size(directory.resolve("films.json")) + Files.size(directory.resolve("likes.json")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public InMemoryFilmStorage loadSnapshot() throws IOException {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        storage.loadSnapshot(directory.resolve("films.snapshot"));
+        return storage;
+    }
+
+    @Benchmark
+    public InMemoryFilmStorage importJson() throws IOException {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        for (Film film : mapper.readValue(directory.resolve("films.json").toFile(), FILMS)) {
+            film.setId(null);
+            storage.create(film);
+        }
+        mapper.readValue(directory.resolve("likes.json").toFile(), LIKES).forEach((filmId, userIds) -> {
+            for (long userId : userIds) {
+                storage.addLike(filmId, userId);
+            }
+        });
+        return storage;
+    }
+}
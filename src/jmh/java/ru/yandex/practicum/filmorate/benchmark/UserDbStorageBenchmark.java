@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class UserDbStorageBenchmark {
+
+    @Benchmark
+    public Collection<User> getCommonFriends(BenchmarkDatabase db) {
+        return db.userDbStorage.getCommonFriends(db.randomUserId(), db.randomUserId());
+    }
+
+    @Benchmark
+    public Collection<User> getUserFriends(BenchmarkDatabase db) {
+        return db.userDbStorage.getUserFriends(db.randomUserId());
+    }
+
+    @Benchmark
+    public Collection<User> getFriendSuggestions(BenchmarkDatabase db) {
+        return db.userDbStorage.getFriendSuggestions(db.randomUserId(), 10);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// выбор идентификаторов от 1 до n по закону Ципфа: вероятность элемента с рангом k пропорциональна 1 / k^exponent,
+// ранги случайно перемешаны, чтобы популярность не зависела от идентификатора
+class ZipfSampler {
+    private final double[] cumulative; // накопленные вероятности рангов
+    private final int[] idsByRank;
+
+    ZipfSampler(int n, double exponent, Random random) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+        idsByRank = new int[n];
+        for (int i = 0; i < n; i++) {
+            idsByRank[i] = i + 1;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = idsByRank[i];
+            idsByRank[i] = idsByRank[j];
+            idsByRank[j] = id;
+        }
+    }
+
+    int sample(Random random) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return idsByRank[Math.min(rank < 0 ? -rank - 1 : rank, idsByRank.length - 1)];
+    }
+}
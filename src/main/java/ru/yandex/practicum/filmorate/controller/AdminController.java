@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.CacheStats;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.CachedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.CachedUserStorage;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/admin")
+public class AdminController { // служебные операции: обновление кэшей и справочников
+    private final FilmService filmService;
+    private final CachedFilmStorage cachedFilmStorage;
+    private final CachedUserStorage cachedUserStorage;
+
+    @Autowired
+    public AdminController(FilmService filmService,
+                           CachedFilmStorage cachedFilmStorage,
+                           CachedUserStorage cachedUserStorage) {
+        this.filmService = filmService;
+        this.cachedFilmStorage = cachedFilmStorage;
+        this.cachedUserStorage = cachedUserStorage;
+    }
+
+    @GetMapping("/cache/stats") // статистика кэшей фильмов и пользователей
+    public Map<String, CacheStats> getCacheStats() {
+        return Map.of("films", cachedFilmStorage.getStats(), "users", cachedUserStorage.getStats());
+    }
+
+    @PostMapping("/reference-data/refresh") // перечитать справочники жанров и рейтингов MPA
+    public void refreshReferenceData() {
+        filmService.refreshReferenceData();
+        log.info("Справочники жанров и рейтингов MPA перечитаны.");
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+final class CursorPage { // ответ постраничной выдачи: курсор следующей страницы передается в заголовке
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private CursorPage() {
+    }
+
+    static int checkLimit(Integer limit) { // размер страницы с учетом значения по умолчанию
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ValidationException("Параметр limit должен быть в диапазоне от 1 до " + MAX_LIMIT + ".");
+        }
+        return limit;
+    }
+
+    // rows запрашиваются с запасом в одну строку: ее наличие означает, что следующая страница существует
+    static <T> ResponseEntity<Collection<T>> of(Collection<T> rows, int limit, Function<T, Long> idGetter) {
+        List<T> page = new ArrayList<>(rows);
+        if (page.size() <= limit) {
+            return ResponseEntity.ok(page);
+        }
+        page = page.subList(0, limit);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, String.valueOf(idGetter.apply(page.get(limit - 1))))
+                .body(page);
+    }
+}
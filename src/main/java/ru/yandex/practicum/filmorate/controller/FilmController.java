@@ -1,19 +1,34 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.FilmAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.CatalogVersions;
+import ru.yandex.practicum.filmorate.storage.Projection;
+import ru.yandex.practicum.filmorate.storage.TitleTrie;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 @Slf4j
@@ -22,10 +37,23 @@ import java.util.*;
 public class FilmController {
 
     private final FilmService filmService;
+    private final CatalogVersions versions;
+    private final StreamingResponses streaming;
+    private final SparseFields sparseFields;
+    private final ObjectReader filmReader;
+    private final PreparedJson genresJson;
+    private final PreparedJson mpaJson;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, CatalogVersions versions, StreamingResponses streaming,
+                          SparseFields sparseFields, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.versions = versions;
+        this.streaming = streaming;
+        this.sparseFields = sparseFields;
+        this.filmReader = objectMapper.readerFor(Film.class);
+        this.genresJson = new PreparedJson(objectMapper.writer());
+        this.mpaJson = new PreparedJson(objectMapper.writer());
     }
 
     @PostMapping("/films")  // добавление фильма
@@ -34,6 +62,15 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    // пакетное добавление фильмов: JSON-массив или NDJSON, фильмы читаются из потока по мере обработки
+    @PostMapping(value = "/films/batch", consumes = {MediaType.APPLICATION_JSON_VALUE,
+            StreamingResponses.APPLICATION_NDJSON})
+    public List<BatchItemResult> createBatch(InputStream body) throws IOException {
+        try (MappingIterator<Film> films = filmReader.readValues(body)) {
+            return filmService.createBatch(films);
+        }
+    }
+
     @PutMapping("/films") // обновление фильма
     public Film put(@Valid @RequestBody Film film) throws ValidationException, FilmNotFoundException {
         log.info("Обновлены данные фильма: {}.", film);
@@ -45,7 +82,7 @@ public class FilmController {
             @PathVariable Long id,
             @PathVariable Long userId) throws FilmNotFoundException, UserNotFoundException {
         filmService.addLike(id, userId);
-        log.info("Фильму {} добавлена отметка нравится.", filmService.getFilmById(id));
+        log.info("Фильму {} добавлена отметка нравится от пользователя {}.", id, userId);
     }
 
     @DeleteMapping("/films/{id}/like/{userId}") // удаление лайка
@@ -53,33 +90,95 @@ public class FilmController {
             @PathVariable Long id,
             @PathVariable Long userId) throws FilmNotFoundException, UserNotFoundException {
         filmService.deleteLike(id, userId);
-        log.info("Фильму {} удалена отметка нравится.", filmService.getFilmById(id));
+        log.info("Фильму {} удалена отметка нравится от пользователя {}.", id, userId);
     }
 
-    @GetMapping ("/films") // получение всех фильмов
-    public Collection<Film> getAllFilms() {
-        return filmService.findAllFilms();
+    // получение всех фильмов или страницы фильмов после идентификатора after; fields - только перечисленные поля
+    @GetMapping ("/films")
+    public ResponseEntity<Collection<?>> getAllFilms(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "fields", required = false) String fields) {
+        Projection projection = Projection.parse(fields, Projection.FILM_FIELDS);
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(sparseFields.view(filmService.findAllFilms(projection), projection));
+        }
+        int pageSize = CursorPage.checkLimit(limit);
+        return sparseFields.view(CursorPage.of(filmService.findFilmsPage(after, pageSize + 1, projection), pageSize,
+                Film::getId), projection);
     }
 
-    @GetMapping("/films/popular")  // получение 10 популярных фильмов
-    public Collection<Film> getPopularFilms(
-            @RequestParam(value = "count", defaultValue = "10", required = false) int count) {
-        return filmService.findPopularFilms(count);
+    // все фильмы потоком NDJSON, только при явном Accept: application/x-ndjson
+    @GetMapping(value = "/films", produces = StreamingResponses.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllFilms(@RequestParam Map<String, String> params) {
+        return streaming.ndjson("films", params, filmService::streamAllFilms);
+    }
+
+    // получение популярных фильмов, при необходимости жанра и года выпуска; ETag - общая версия каталога
+    @GetMapping("/films/popular")
+    public Collection<?> getPopularFilms(
+            @RequestParam(value = "count", defaultValue = "10", required = false) int count,
+            @RequestParam(value = "genreId", required = false) Integer genreId,
+            @RequestParam(value = "year", required = false) Integer year,
+            @RequestParam(value = "fields", required = false) String fields,
+            WebRequest request) {
+        if (count < 1) {
+            throw new ValidationException("Параметр count должен быть положительным.");
+        }
+        if (year != null && (year < 1 || year > 9999)) { // диапазон DATE в SQL
+            throw new ValidationException("Параметр year должен быть в диапазоне от 1 до 9999.");
+        }
+        Projection projection = Projection.parse(fields, Projection.FILM_FIELDS);
+        if (request.checkNotModified(versions.catalogTag())) {
+            return null; // 304 Not Modified
+        }
+        return sparseFields.view(filmService.findPopularFilms(count, genreId, year, projection), projection);
     }
 
-    @GetMapping("/films/{id}") // получение фильма по id
-    public Film getFilmById(@PathVariable Long id) throws FilmNotFoundException {
-        Film film = filmService.getFilmById(id);
+    @GetMapping("/films/search") // поиск фильмов по названию и описанию, популярные выше
+    public Collection<Film> searchFilms(
+            @RequestParam(value = "q") String query,
+            @RequestParam(value = "count", defaultValue = "20", required = false) int count) {
+        return filmService.searchFilms(query, count);
+    }
+
+    // подсказки по началу названия фильма, популярные выше; limit от 1 до TitleTrie.MAX_SUGGESTIONS (10) -
+    // больше подсказок узлы дерева не хранят
+    @GetMapping("/films/suggest")
+    public List<FilmSuggestion> suggestFilms(
+            @RequestParam(value = "prefix") String prefix,
+            @RequestParam(value = "limit", defaultValue = "10", required = false) int limit) {
+        if (limit < 1 || limit > TitleTrie.MAX_SUGGESTIONS) {
+            throw new ValidationException("Параметр limit должен быть в диапазоне от 1 до "
+                    + TitleTrie.MAX_SUGGESTIONS + ".");
+        }
+        return filmService.suggestFilms(prefix, limit);
+    }
+
+    @GetMapping("/films/{id}") // получение фильма по id, ETag - версия фильма
+    public Object getFilmById(@PathVariable Long id,
+                              @RequestParam(value = "fields", required = false) String fields,
+                              WebRequest request) throws FilmNotFoundException {
+        Projection projection = Projection.parse(fields, Projection.FILM_FIELDS);
+        if (request.checkNotModified(versions.filmTag(id))) {
+            return null;
+        }
+        Film film = filmService.getFilmById(id, projection);
         if (film == null) {
             log.debug("Попытка получить фильм с несуществующим идентификатором: {}.", id);
             throw new FilmNotFoundException("В Filmorate отсутствует фильм с идентификатором № " + id);
         }
-        return film;
+        return sparseFields.view(film, projection);
     }
 
-    @GetMapping("/mpa")  // получение списка mpa-рейтинга фильмов
-    public Collection<Mpa> getMpa() {
-        return filmService.getAllMpa();
+    @GetMapping("/mpa")  // получение списка mpa-рейтинга фильмов, тело сериализуется один раз на версию справочников
+    public ResponseEntity<byte[]> getMpa(WebRequest request) throws JsonProcessingException {
+        String tag = versions.referenceTag();
+        if (request.checkNotModified(tag)) {
+            return null;
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(mpaJson.get(tag, filmService::getAllMpa));
     }
 
     @GetMapping("/mpa/{id}")  // получение mpa-рейтинга фильмов
@@ -87,9 +186,14 @@ public class FilmController {
         return filmService.getMpaById(id);
     }
 
-    @GetMapping("/genres")  // получение списка жанров фильмов
-    public Collection<Genre> getGenre() {
-        return filmService.getAllGenres();
+    @GetMapping("/genres")  // получение списка жанров фильмов, тело сериализуется один раз на версию справочников
+    public ResponseEntity<byte[]> getGenre(WebRequest request) throws JsonProcessingException {
+        String tag = versions.referenceTag();
+        if (request.checkNotModified(tag)) {
+            return null;
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(genresJson.get(tag, filmService::getAllGenres));
     }
 
     @GetMapping("/genres/{id}")  // получение жанра фильмов
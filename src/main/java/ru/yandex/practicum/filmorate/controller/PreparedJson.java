@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.function.Supplier;
+
+final class PreparedJson { // тело ответа, сериализованное один раз для каждой версии данных
+    private final ObjectWriter writer;
+    private volatile Entry entry;
+
+    PreparedJson(ObjectWriter writer) {
+        this.writer = writer;
+    }
+
+    // tag нужно получить до чтения данных: тогда сохраненное тело не старее своей версии
+    byte[] get(String tag, Supplier<?> body) throws JsonProcessingException {
+        Entry current = entry;
+        if (current == null || !current.tag.equals(tag)) {
+            current = new Entry(tag, writer.writeValueAsBytes(body.get()));
+            entry = current;
+        }
+        return current.bytes;
+    }
+
+    private static final class Entry {
+        private final String tag;
+        private final byte[] bytes;
+
+        private Entry(String tag, byte[] bytes) {
+            this.tag = tag;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.Projection;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// ответ с полями, запрошенными параметром fields: объект заменяется LinkedHashMap с полями в порядке запроса,
+// так что непрочитанные из базы поля не попадают в ответ как null
+@Component
+public class SparseFields {
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public SparseFields(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public Object view(Object item, Projection fields) {
+        if (fields.isAll() || item == null) {
+            return item;
+        }
+        Map<String, Object> values = objectMapper.convertValue(item, MAP_TYPE); // имена и форматы полей как в JSON
+        Map<String, Object> view = new LinkedHashMap<>();
+        for (String field : fields.getFields()) {
+            view.put(field, values.get(field));
+        }
+        return view;
+    }
+
+    public Collection<?> view(Collection<?> items, Projection fields) {
+        if (fields.isAll()) {
+            return items;
+        }
+        return items.stream().map(item -> view(item, fields)).collect(Collectors.toList());
+    }
+
+    // страница постраничной выдачи: заголовки (курсор следующей страницы) сохраняются
+    public <T> ResponseEntity<Collection<?>> view(ResponseEntity<Collection<T>> page, Projection fields) {
+        return ResponseEntity.status(page.getStatusCode())
+                .headers(page.getHeaders())
+                .body(view(page.getBody(), fields));
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// потоковая выдача больших списков в формате NDJSON (объект JSON на строку): строки пишутся в ответ по мере
+// чтения из базы, список в памяти не собирается. Обработчики с produces = APPLICATION_NDJSON выбираются только
+// при явном Accept: application/x-ndjson, для */* и application/json остается обычный массив JSON.
+// Время до первой строки ответа - метрика filmorate.stream.first-byte с тегом endpoint
+@Component
+public class StreamingResponses {
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final MediaType NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON);
+    private static final String FIRST_BYTE = "filmorate.stream.first-byte";
+    private final ObjectWriter writer;
+    private final MeterRegistry registry;
+
+    public StreamingResponses(ObjectMapper objectMapper, MeterRegistry registry) {
+        this.writer = objectMapper.writer();
+        this.registry = registry;
+    }
+
+    // постраничная выдача и выбор полей остаются за обычными обработчиками JSON. Ошибка пишется строкой NDJSON
+    // в формате ErrorHandler: клиент, принимающий только application/x-ndjson, не получил бы ответ ErrorHandler в JSON
+    public <T> ResponseEntity<StreamingResponseBody> ndjson(String endpoint, Map<String, String> params,
+                                                            Consumer<Consumer<T>> source) {
+        if (params.containsKey("after") || params.containsKey("limit") || params.containsKey("fields")) {
+            byte[] error = writeLine(Map.of("error",
+                    "Параметры after, limit и fields не поддерживаются в потоковой выдаче."));
+            return ResponseEntity.badRequest().contentType(NDJSON).body(out -> out.write(error));
+        }
+        return ndjson(endpoint, source);
+    }
+
+    // source передает элементы по одному; первая строка отправляется клиенту сразу, остальные - по заполнении буфера
+    public <T> ResponseEntity<StreamingResponseBody> ndjson(String endpoint, Consumer<Consumer<T>> source) {
+        long start = System.nanoTime();
+        Timer firstByte = Timer.builder(FIRST_BYTE)
+                .tag("endpoint", endpoint)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        StreamingResponseBody body = out -> {
+            boolean[] first = {true};
+            try {
+                source.accept(item -> {
+                    try {
+                        out.write(writeLine(item));
+                        if (first[0]) {
+                            out.flush();
+                            firstByte.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            first[0] = false;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) { // клиент закрыл соединение
+                throw e.getCause();
+            }
+            if (first[0]) { // пустой список
+                firstByte.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private byte[] writeLine(Object item) {
+        try {
+            byte[] json = writer.writeValueAsBytes(item);
+            byte[] line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            return line;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать " + item, e);
+        }
+    }
+}
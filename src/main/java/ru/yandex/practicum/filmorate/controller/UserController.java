@@ -2,14 +2,19 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.UserAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.Projection;
 
 import javax.validation.Valid;
 import java.util.*;
@@ -19,11 +24,19 @@ import java.util.*;
 @Validated
 @RequestMapping("/users")
 public class UserController {
+    private static final int MAX_SUGGESTIONS = 100; // наибольшее значение параметра count рекомендаций друзей и фильмов
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final StreamingResponses streaming;
+    private final SparseFields sparseFields;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService,
+                          StreamingResponses streaming, SparseFields sparseFields) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.streaming = streaming;
+        this.sparseFields = sparseFields;
     }
 
     @PostMapping  // создание пользователя
@@ -59,6 +72,19 @@ public class UserController {
         return userService.getFriendsForUser(id);
     }
 
+    @GetMapping(value = "/{id}/friends", produces = StreamingResponses.APPLICATION_NDJSON) // друзья потоком NDJSON
+    public ResponseEntity<StreamingResponseBody> streamUserFriends(@PathVariable Long id) {
+        return streaming.<User>ndjson("user_friends", action -> userService.streamFriendsForUser(id, action));
+    }
+
+    @GetMapping("/{id}/friends/suggestions") // рекомендации друзей по числу общих друзей
+    public Collection<User> getFriendSuggestions(
+            @PathVariable Long id,
+            @RequestParam(value = "count", defaultValue = "10", required = false) int count)
+            throws UserNotFoundException {
+        return userService.getFriendSuggestions(id, checkCount(count));
+    }
+
     @GetMapping("/{id}/friends/common/{friendId}") // получение списка общих друзей 2х пользователей
     public Collection<User> getCommonFriends(
             @PathVariable Long id,
@@ -66,19 +92,53 @@ public class UserController {
         return userService.getCommonFriends(id, friendId);
     }
 
-    @GetMapping  // получение списка всех пользователей
-    public Collection<User> findAll() {
-        return userService.findAllUsers();
+    @GetMapping("/{id}/recommendations") // рекомендации фильмов по отметкам нравится похожих пользователей
+    public Collection<Film> getRecommendations(
+            @PathVariable Long id,
+            @RequestParam(value = "count", defaultValue = "10", required = false) int count)
+            throws UserNotFoundException {
+        return recommendationService.getRecommendations(id, checkCount(count));
+    }
+
+    // получение списка всех пользователей или страницы пользователей после идентификатора after;
+    // fields - только перечисленные поля
+    @GetMapping
+    public ResponseEntity<Collection<?>> findAll(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "fields", required = false) String fields) {
+        Projection projection = Projection.parse(fields, Projection.USER_FIELDS);
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(sparseFields.view(userService.findAllUsers(projection), projection));
+        }
+        int pageSize = CursorPage.checkLimit(limit);
+        return sparseFields.view(CursorPage.of(userService.findUsersPage(after, pageSize + 1, projection), pageSize,
+                User::getId), projection);
+    }
+
+    // все пользователи потоком NDJSON, только при явном Accept: application/x-ndjson
+    @GetMapping(produces = StreamingResponses.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam Map<String, String> params) {
+        return streaming.ndjson("users", params, userService::streamAllUsers);
     }
 
     @GetMapping("/{id}") // получение пользователя по id
-    public User getUserById(@PathVariable Long id) throws UserNotFoundException {
-        Optional<User> user = userService.getUserById(id);
+    public Object getUserById(@PathVariable Long id,
+                              @RequestParam(value = "fields", required = false) String fields)
+            throws UserNotFoundException {
+        Projection projection = Projection.parse(fields, Projection.USER_FIELDS);
+        Optional<User> user = userService.getUserById(id, projection);
         if (user.isEmpty()) {
             log.debug("Попытка получить пользователя с несуществующим идентификатором: {}.", id);
             throw new FilmNotFoundException("В Filmorate отсутствует пользователь с идентификатором № " + id);
         }
-        return user.get();
+        return sparseFields.view(user.get(), projection);
     }
-}
 
+    private static int checkCount(int count) {
+        if (count < 1 || count > MAX_SUGGESTIONS) {
+            throw new ValidationException("Параметр count должен быть в диапазоне от 1 до " + MAX_SUGGESTIONS + ".");
+        }
+        return count;
+    }
+}
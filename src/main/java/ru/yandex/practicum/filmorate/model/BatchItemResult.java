@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BatchItemResult { // результат обработки одного элемента пакетной загрузки
+    private int index; // порядковый номер элемента во входных данных
+    private Long id; // идентификатор созданного объекта
+    private String error; // описание ошибки, если объект не создан
+}
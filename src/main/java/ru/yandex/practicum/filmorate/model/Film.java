@@ -14,7 +14,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class Film {
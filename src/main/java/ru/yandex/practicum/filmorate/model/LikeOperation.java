@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class LikeOperation { // отложенное добавление или удаление отметки нравится
+    private long filmId;
+    private long userId;
+    private boolean like; // true - добавить отметку, false - удалить
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class LikesMemoryStats {
+    private long likes; // число отметок нравится
+    private long bytes; // приблизительный объем памяти под отметки
+    private int bitmapFilms; // число фильмов, отметки которых хранятся битовой картой
+
+    public double getBytesPerLike() {
+        return likes == 0 ? 0 : (double) bytes / likes;
+    }
+}
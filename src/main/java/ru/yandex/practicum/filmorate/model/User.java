@@ -9,7 +9,7 @@ import javax.validation.constraints.Past;
 import java.time.LocalDate;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class User {
     private Long id; // целочисленный идентификатор
     @Email
@@ -3,48 +3,172 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.GenreStorage;
-import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.Dao.QueryMetrics;
+import ru.yandex.practicum.filmorate.storage.Projection;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.SearchIndex;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.validator.FilmValidator;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service("FilmDbService")
 public class FilmDbService implements FilmService {
     private final JdbcTemplate jdbcTemplate;
+    private final QueryMetrics queryMetrics;
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
-    private final GenreStorage genreStorage;
-    private final MpaStorage mpaStorage;
-    private static final String SQL_CREATE_LIKE_FOR_FILM = "MERGE INTO likes (user_id, film_id) VALUES (?, ?)";
-    private static final String SQL_DELETE_LIKE = "DELETE FROM likes WHERE user_id = ? AND film_id = ?";
+    private final ReferenceDataCache referenceData;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final LikeWriteBehind likeWriteBehind;
+    private final int batchSize; // число фильмов, добавляемых в одной транзакции при пакетной загрузке
+    private static final int MAX_SEARCH_RESULTS = 100;
     private static final String SQL_GET_LIKES = "SELECT user_id FROM likes WHERE film_id = ?";
 
     @Autowired
-    public FilmDbService(JdbcTemplate jdbcTemplate,
-                         @Qualifier("FilmDbStorage") FilmStorage filmStorage,
-                         @Qualifier("UserDbStorage") UserStorage userStorage,
-                         GenreStorage genreStorage, MpaStorage mpaStorage) {
+    public FilmDbService(JdbcTemplate jdbcTemplate, QueryMetrics queryMetrics,
+                         @Qualifier("CachedFilmStorage") FilmStorage filmStorage,
+                         @Qualifier("CachedUserStorage") UserStorage userStorage,
+                         ReferenceDataCache referenceData,
+                         PlatformTransactionManager transactionManager,
+                         Validator validator,
+                         LikeWriteBehind likeWriteBehind,
+                         @Value("${filmorate.films.batch-size:1000}") int batchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.queryMetrics = queryMetrics;
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
-        this.genreStorage = genreStorage;
-        this.mpaStorage = mpaStorage;
+        this.referenceData = referenceData;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.likeWriteBehind = likeWriteBehind;
+        this.batchSize = batchSize;
     }
 
     public Film create(Film film) { // добавить фильм
         return filmStorage.create(film);
     }
 
+    public List<BatchItemResult> createBatch(Iterator<Film> films) { // добавить фильмы пакетами
+        long start = System.nanoTime();
+        List<BatchItemResult> results = new ArrayList<>();
+        List<Film> chunk = new ArrayList<>(batchSize);
+        List<Integer> chunkIndexes = new ArrayList<>(batchSize);
+        int index = 0;
+        while (true) {
+            Film film;
+            try {
+                if (!films.hasNext()) {
+                    break;
+                }
+                film = films.next();
+            } catch (RuntimeException e) { // дальнейший разбор входных данных невозможен
+                results.add(new BatchItemResult(index, null, "Некорректные входные данные: " + e.getMessage()));
+                break;
+            }
+            String error = validate(film);
+            if (error != null) {
+                results.add(new BatchItemResult(index, null, error));
+            } else {
+                chunk.add(film);
+                chunkIndexes.add(index);
+                if (chunk.size() == batchSize) {
+                    results.addAll(createChunk(chunk, chunkIndexes));
+                    chunk.clear();
+                    chunkIndexes.clear();
+                }
+            }
+            index++;
+        }
+        results.addAll(createChunk(chunk, chunkIndexes));
+        results.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("Пакетная загрузка: обработано {} фильмов за {} с ({} фильмов/с).",
+                index, String.format("%.2f", seconds), Math.round(index / Math.max(seconds, 1e-9)));
+        return results;
+    }
+
+    private String validate(Film film) { // описание ошибки или null, если фильм корректен
+        Set<ConstraintViolation<Film>> violations = validator.validate(film);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (!FilmValidator.validate(film)) {
+            return "Введены некорректные данные, проверьте корректность заполнения полей.";
+        }
+        return null;
+    }
+
+    // фильмы пакета добавляются в одной транзакции, при ошибке пакет повторяется поштучно,
+    // чтобы отделить корректные фильмы от вызвавших ошибку
+    private List<BatchItemResult> createChunk(List<Film> chunk, List<Integer> indexes) {
+        List<BatchItemResult> results = new ArrayList<>(chunk.size());
+        if (chunk.isEmpty()) {
+            return results;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> filmStorage.createBatch(chunk));
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(new BatchItemResult(indexes.get(i), chunk.get(i).getId(), null));
+            }
+        } catch (RuntimeException e) {
+            log.debug("Пакет из {} фильмов отклонен, повтор поштучно: {}", chunk.size(), e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                Film film = chunk.get(i);
+                film.setId(null);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> filmStorage.create(film));
+                    results.add(new BatchItemResult(indexes.get(i), film.getId(), null));
+                } catch (RuntimeException ex) {
+                    results.add(new BatchItemResult(indexes.get(i), null, itemError(indexes.get(i), film, ex)));
+                }
+            }
+        }
+        return results;
+    }
+
+    // текст ошибки фильма для ответа: сообщения драйвера и SQL клиенту не передаются, только в журнал
+    private String itemError(int index, Film film, RuntimeException e) {
+        if (e instanceof DuplicateKeyException) {
+            return "В Filmorate уже добавлен фильм с названием: " + film.getName();
+        }
+        if (e instanceof DataIntegrityViolationException) {
+            log.debug("Фильм № {} пакета не добавлен: {}", index, e.getMessage());
+            return "Фильм ссылается на несуществующий рейтинг MPA или жанр.";
+        }
+        log.warn("Фильм № {} пакета не добавлен.", index, e);
+        return "Не удалось добавить фильм.";
+    }
+
     public Film put(Film film) { // обновить фильм
         return filmStorage.put(film);
     }
@@ -53,31 +177,105 @@ public class FilmDbService implements FilmService {
         return filmStorage.findAll();
     }
 
+    public Collection<Film> findAllFilms(Projection fields) { // найти все фильмы, прочитав только поля fields
+        return filmStorage.findAll(fields);
+    }
+
+    // передать все фильмы по одному для потоковой выдачи. Транзакция привязывает соединение к потоку: курсор
+    // и дозагрузка жанров идут через одно соединение пула, а не занимают два на все время выдачи
+    @Transactional(readOnly = true)
+    public void streamAllFilms(Consumer<Film> action) {
+        filmStorage.streamAll(action);
+    }
+
+    public Collection<Film> findFilmsPage(Long after, int limit) { // найти страницу фильмов
+        return filmStorage.findPage(after, limit);
+    }
+
+    public Collection<Film> findFilmsPage(Long after, int limit, Projection fields) {
+        return filmStorage.findPage(after, limit, fields);
+    }
+
     public Film getFilmById(Long id) { // найти фильм по идентификатору
         return filmStorage.getById(id);
     }
 
+    public Film getFilmById(Long id, Projection fields) {
+        return filmStorage.getById(id, fields);
+    }
+
     public Collection<Film> findPopularFilms(int count) { // найти популярные фильмы
         return filmStorage.getPopular(count);
     }
 
+    public Collection<Film> findPopularFilms(int count, Integer genreId, Integer year) { // популярные жанра и года
+        return findPopularFilms(count, genreId, year, Projection.ALL);
+    }
+
+    public Collection<Film> findPopularFilms(int count, Integer genreId, Integer year, Projection fields) {
+        if (genreId != null) {
+            getGenreById(genreId); // неизвестный жанр - 404
+        }
+        return filmStorage.getPopular(count, genreId, year, fields);
+    }
+
+    public Collection<Film> searchFilms(String query, int count) { // найти фильмы по словам запроса
+        if (SearchIndex.tokenize(query).isEmpty()) {
+            throw new ValidationException("Поисковый запрос должен содержать хотя бы одно слово.");
+        }
+        if (count < 1 || count > MAX_SEARCH_RESULTS) {
+            throw new ValidationException("Параметр count должен быть в диапазоне от 1 до " + MAX_SEARCH_RESULTS + ".");
+        }
+        return filmStorage.search(query, count);
+    }
+
+    public List<FilmSuggestion> suggestFilms(String prefix, int limit) { // подсказки по началу названия фильма
+        if (prefix == null || prefix.isBlank()) {
+            throw new ValidationException("Параметр prefix не должен быть пустым.");
+        }
+        return filmStorage.suggest(prefix, limit);
+    }
+
+    @Transactional
     public void addLike(Long filmId, Long userId) { // добавить отметку нравится фильму
-        if (filmStorage.getById(filmId) != null && userStorage.getById(userId).isPresent()) {
-            jdbcTemplate.update(SQL_CREATE_LIKE_FOR_FILM, userId, filmId);
-            log.info("Пользователь {} поставил отметку нравится фильму {}.", userId, Long.valueOf(filmId));
+        if (likeWriteBehind.isEnabled()) {
+            submitLike(new LikeOperation(filmId, userId, true));
+            return;
         }
+        filmStorage.addLike(filmId, userId);
+        log.info("Пользователь {} поставил отметку нравится фильму {}.", userId, filmId);
     }
 
+    @Transactional
     public void deleteLike(Long filmId, Long userId) { // удалить отметку нравится фильму
-        if (filmStorage.getById(filmId) != null && userStorage.getById(userId).isPresent()) {
-            jdbcTemplate.update(SQL_DELETE_LIKE, filmId, userId);
+        if (likeWriteBehind.isEnabled()) {
+            submitLike(new LikeOperation(filmId, userId, false));
+            return;
+        }
+        if (filmStorage.deleteLike(filmId, userId)) {
             log.info("Отметка нравится от пользователя {} для фильма {} удалена.", userId, filmId);
+        } else { // отметки не было: проверяем фильм и пользователя, чтобы сообщить о несуществующем
+            filmStorage.getById(filmId);
+            userStorage.getById(userId);
         }
     }
 
+    private void submitLike(LikeOperation operation) { // фильм и пользователь проверяются до постановки в очередь
+        filmStorage.getById(operation.getFilmId());
+        userStorage.getById(operation.getUserId());
+        likeWriteBehind.submit(operation);
+    }
+
+    // сверка счетчиков отметок нравится с таблицей LIKES и перестроение рейтинга популярности
+    @Scheduled(initialDelayString = "${filmorate.likes-count.repair-interval-ms:3600000}",
+            fixedDelayString = "${filmorate.likes-count.repair-interval-ms:3600000}")
+    public void repairLikesCount() {
+        filmStorage.rebuildPopularity();
+    }
+
     public List<Long> getAllLikesForFilm(Long filmId) {
         List<Long> likesList = new ArrayList<>();
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet(SQL_GET_LIKES, filmId);
+        SqlRowSet rowSet = queryMetrics.record("SQL_GET_LIKES", () -> jdbcTemplate.queryForRowSet(SQL_GET_LIKES, filmId));
         while (rowSet.next()) {
             likesList.add(rowSet.getLong("user_id"));
         }
@@ -85,18 +283,22 @@ public class FilmDbService implements FilmService {
     }
 
     public Mpa getMpaById(int id) {
-        return mpaStorage.getMpaById(id);
+        return referenceData.getMpaById(id);
     }
 
     public Collection<Mpa> getAllMpa() {
-        return mpaStorage.getAllMpa();
+        return referenceData.getAllMpa();
     }
 
     public Genre getGenreById(int id) {
-        return genreStorage.getGenreById(id);
+        return referenceData.getGenreById(id);
     }
 
     public List<Genre> getAllGenres() {
-        return genreStorage.getAllGenres();
+        return referenceData.getAllGenres();
+    }
+
+    public void refreshReferenceData() { // перечитать справочники жанров и рейтингов MPA
+        referenceData.refresh();
     }
 }
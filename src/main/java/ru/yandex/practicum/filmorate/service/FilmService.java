@@ -1,25 +1,49 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.Projection;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 public interface FilmService { // отвечает за операции с фильмами: добавление/удаление лайков, получение списков фильмов
 
     Film create(Film film); // добавить фильм
 
+    List<BatchItemResult> createBatch(Iterator<Film> films); // добавить фильмы пакетами
+
     Film put(Film film); // обновить фильм
 
     Collection<Film> findAllFilms(); // найти все фильмы
 
+    Collection<Film> findAllFilms(Projection fields); // найти все фильмы, прочитав только поля fields
+
+    void streamAllFilms(Consumer<Film> action); // передать все фильмы по одному для потоковой выдачи
+
+    Collection<Film> findFilmsPage(Long after, int limit); // найти страницу фильмов после идентификатора after
+
+    Collection<Film> findFilmsPage(Long after, int limit, Projection fields);
+
     Film getFilmById(Long id); // найти фильм по идентификатору
 
+    Film getFilmById(Long id, Projection fields);
+
     Collection<Film> findPopularFilms(int count); // найти популярные фильмы
 
+    Collection<Film> findPopularFilms(int count, Integer genreId, Integer year); // найти популярные фильмы жанра и года
+
+    Collection<Film> findPopularFilms(int count, Integer genreId, Integer year, Projection fields);
+
+    Collection<Film> searchFilms(String query, int count); // найти фильмы по словам из названия и описания
+
+    List<FilmSuggestion> suggestFilms(String prefix, int limit); // подсказки по началу названия фильма
+
     void addLike(Long filmId, Long userId); // добавить отметку нравится фильму
 
     void deleteLike(Long filmId, Long userId); // удалить отметку нравится фильму
@@ -31,4 +55,6 @@ public interface FilmService { // отвечает за операции с фи
     Genre getGenreById(int id); // найти жанр фильма по идентификатору
 
     List<Genre> getAllGenres(); // найти все жанры фильма
+
+    void refreshReferenceData(); // перечитать справочники жанров и рейтингов MPA
 }
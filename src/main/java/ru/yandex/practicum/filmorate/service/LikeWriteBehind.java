@@ -0,0 +1,193 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.LikeQueueFullException;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.storage.Dao.FilmDbStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// отложенная запись отметок нравится: запрос подтверждается после попадания операции в ограниченную очередь,
+// фоновый поток объединяет операции над одной парой фильм-пользователь и записывает их пакетами
+@Slf4j
+@Service
+public class LikeWriteBehind {
+    private static final long POLL_TIMEOUT_MS = 100;
+    private final FilmDbStorage filmDbStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long offerTimeoutMs; // сколько ждать места в очереди, прежде чем отклонить запрос
+    private final BlockingQueue<Pending> queue;
+    private final Timer flushTimer;
+    private final DistributionSummary flushSize;
+    private final Counter coalesced;
+    private final Counter rejected;
+    private final Counter dropped;
+    private volatile boolean running;
+    private Thread flusher;
+
+    @Autowired
+    public LikeWriteBehind(FilmDbStorage filmDbStorage, PlatformTransactionManager transactionManager,
+                           MeterRegistry registry,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.queue-capacity:10000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.offer-timeout-ms:50}") long offerTimeoutMs) {
+        this.filmDbStorage = filmDbStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("filmorate.likes.queue.size", queue, BlockingQueue::size).register(registry);
+        Gauge.builder("filmorate.likes.queue.lag", queue, LikeWriteBehind::lagMillis) // возраст старейшей операции
+                .baseUnit("milliseconds")
+                .register(registry);
+        this.flushTimer = Timer.builder("filmorate.likes.flush").register(registry);
+        this.flushSize = DistributionSummary.builder("filmorate.likes.flush.size").register(registry);
+        this.coalesced = Counter.builder("filmorate.likes.coalesced").register(registry);
+        this.rejected = Counter.builder("filmorate.likes.rejected").register(registry);
+        this.dropped = Counter.builder("filmorate.likes.dropped").register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            running = true;
+            flusher = new Thread(this::run, "likes-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+            log.info("Включена отложенная запись отметок нравится, пакет до {} операций.", batchSize);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException { // дописать очередь до закрытия пула соединений
+        if (flusher == null) {
+            return;
+        }
+        int queued = queue.size();
+        running = false;
+        // очередь дописывает сам фоновый поток: пакеты фиксируются по одному и в порядке постановки.
+        // Ожидание без таймаута - иначе остаток пришлось бы писать параллельно с незавершенным пакетом
+        flusher.join();
+        List<LikeOperation> rest = new ArrayList<>(); // операции, поставленные после выхода фонового потока
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            rest.add(pending.operation);
+        }
+        if (!rest.isEmpty()) {
+            flushOrDrop(rest);
+        }
+        log.info("Отложенная запись отметок нравится остановлена, в очереди при остановке: {}.",
+                queued + rest.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void submit(LikeOperation operation) { // поставить операцию в очередь с ожиданием свободного места
+        try {
+            if (queue.offer(new Pending(operation), offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        throw new LikeQueueFullException("Очередь отметок нравится переполнена, повторите запрос позже.");
+    }
+
+    private void run() {
+        List<LikeOperation> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first.operation);
+                Pending next;
+                while (batch.size() < batchSize && (next = queue.poll()) != null) {
+                    batch.add(next.operation);
+                }
+                flushOrDrop(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushOrDrop(List<LikeOperation> operations) { // операции непрошедшего пакета учитываются в dropped
+        try {
+            flush(operations);
+        } catch (RuntimeException e) {
+            dropped.increment(operations.size());
+            log.error("Ошибка записи пакета отметок нравится, потеряно операций: {}.", operations.size(), e);
+        }
+    }
+
+    private void flush(List<LikeOperation> operations) {
+        Map<List<Long>, LikeOperation> last = new LinkedHashMap<>(); // итог определяет последняя операция над парой
+        for (LikeOperation operation : operations) {
+            last.put(List.of(operation.getFilmId(), operation.getUserId()), operation);
+        }
+        coalesced.increment(operations.size() - last.size());
+        List<LikeOperation> batch = new ArrayList<>(last.values());
+        flushSize.record(batch.size());
+        flushTimer.record(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> filmDbStorage.applyLikes(batch));
+            } catch (DataAccessException e) { // например, фильм или пользователь удалены: записываем по одной
+                log.warn("Пакет отметок нравится не записан, повтор по одной операции: {}", e.getMessage());
+                for (LikeOperation operation : batch) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> filmDbStorage.applyLikes(List.of(operation)));
+                    } catch (DataAccessException itemError) {
+                        dropped.increment();
+                        log.warn("Отметка нравится {} не записана: {}", operation, itemError.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    private static double lagMillis(BlockingQueue<Pending> queue) {
+        Pending oldest = queue.peek();
+        return oldest == null ? 0 : (System.nanoTime() - oldest.enqueuedAt) / 1_000_000.0;
+    }
+
+    private static class Pending { // операция в очереди вместе со временем постановки
+        private final LikeOperation operation;
+        private final long enqueuedAt;
+
+        private Pending(LikeOperation operation) {
+            this.operation = operation;
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.Dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class RecommendationService { // рекомендации фильмов по отметкам нравится похожих пользователей
+    private final FilmDbStorage filmDbStorage;
+    private final UserStorage userStorage;
+    private final int neighbours; // число соседей пользователя
+    private final int maxLikersPerFilm; // фильмы с большим числом отметок не учитываются при поиске соседей
+    private volatile LikesMatrix matrix = LikesMatrix.EMPTY; // заменяется целиком после каждого пересчета
+
+    @Autowired
+    public RecommendationService(FilmDbStorage filmDbStorage,
+                                 @Qualifier("CachedUserStorage") UserStorage userStorage,
+                                 @Value("${filmorate.recommendations.neighbours:20}") int neighbours,
+                                 @Value("${filmorate.recommendations.max-likers-per-film:10000}") int maxLikersPerFilm) {
+        this.filmDbStorage = filmDbStorage;
+        this.userStorage = userStorage;
+        this.neighbours = neighbours;
+        this.maxLikersPerFilm = maxLikersPerFilm;
+    }
+
+    // пересчет соседей в фоне; до первого пересчета рекомендации пусты
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.refresh-interval-ms:600000}")
+    public synchronized void refresh() {
+        long start = System.nanoTime();
+        LikesMatrix rebuilt = filmDbStorage.loadLikes().build(neighbours, maxLikersPerFilm);
+        matrix = rebuilt;
+        log.info("Пересчитаны соседи {} пользователей по {} отметкам нравится за {} мс.",
+                rebuilt.users(), rebuilt.likes(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public List<Film> getRecommendations(Long userId, int count) { // фильмы, понравившиеся похожим пользователям
+        userStorage.getById(userId); // проверка существования пользователя
+        long[] filmIds = matrix.recommend(userId, count);
+        return filmDbStorage.getByIds(Arrays.stream(filmIds).boxed().collect(Collectors.toList()));
+    }
+}
@@ -6,9 +6,11 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.Dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.Projection;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -18,7 +20,7 @@ public class UserService { // отвечает за добавление/уда
 
 
     @Autowired
-    public UserService(@Qualifier("UserDbStorage") UserStorage userStorage, UserDbStorage userDbStorage) {
+    public UserService(@Qualifier("CachedUserStorage") UserStorage userStorage, UserDbStorage userDbStorage) {
         this.userStorage = userStorage;
         this.userDbStorage = userDbStorage;
     }
@@ -35,10 +37,30 @@ public class UserService { // отвечает за добавление/уда
         return userStorage.findAll();
     }
 
+    public Collection<User> findAllUsers(Projection fields) { // найти всех пользователей, прочитав только поля fields
+        return userStorage.findAll(fields);
+    }
+
+    public void streamAllUsers(Consumer<User> action) { // передать всех пользователей по одному
+        userStorage.streamAll(action);
+    }
+
+    public Collection<User> findUsersPage(Long after, int limit) { // найти страницу пользователей
+        return userStorage.findPage(after, limit);
+    }
+
+    public Collection<User> findUsersPage(Long after, int limit, Projection fields) {
+        return userStorage.findPage(after, limit, fields);
+    }
+
     public Optional<User> getUserById(Long id) { // найти пользователя по идентификатору
         return userStorage.getById(id);
     }
 
+    public Optional<User> getUserById(Long id, Projection fields) {
+        return userStorage.getById(id, fields);
+    }
+
     public void addFriend(Long userId, Long friendId) { // добавить друга
         userDbStorage.addFriend(userId, friendId);
     }
@@ -51,8 +73,17 @@ public class UserService { // отвечает за добавление/уда
         return userDbStorage.getUserFriends(userId);
     }
 
+    public void streamFriendsForUser(Long userId, Consumer<User> action) { // передать друзей по одному
+        userDbStorage.streamUserFriends(userId, action);
+    }
+
     public Collection<User> getCommonFriends(Long userId, Long friendId) { // получить список общих друзей
         return userDbStorage.getCommonFriends(userId, friendId);
     }
+
+    public Collection<User> getFriendSuggestions(Long userId, int count) { // рекомендовать друзей друзей
+        userStorage.getById(userId); // проверка существования пользователя
+        return userDbStorage.getFriendSuggestions(userId, count);
+    }
 }
 
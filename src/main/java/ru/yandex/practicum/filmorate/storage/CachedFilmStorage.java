@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.CacheStats;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+@Component
+@Qualifier("CachedFilmStorage")
+public class CachedFilmStorage implements FilmStorage { // кэш фильмов по идентификатору поверх хранилища в БД
+    private final FilmStorage filmStorage;
+    private final LruCache<Long, Film> cache;
+    private final CatalogVersions versions;
+
+    @Autowired
+    public CachedFilmStorage(@Qualifier("FilmDbStorage") FilmStorage filmStorage,
+                             @Value("${filmorate.cache.films.max-size:10000}") int maxSize,
+                             CatalogVersions versions) {
+        this.filmStorage = filmStorage;
+        this.cache = new LruCache<>(maxSize);
+        this.versions = versions;
+    }
+
+    @Override
+    public Film create(Film film) {
+        Film created = filmStorage.create(film);
+        Film cached = copy(created);
+        Transactions.afterCommit(() -> cache.put(cached.getId(), cached)); // после отката в кэше ничего не остается
+        return created;
+    }
+
+    @Override
+    public List<Film> createBatch(List<Film> films) { // пакетная загрузка не вытесняет из кэша горячие фильмы
+        return filmStorage.createBatch(films);
+    }
+
+    @Override
+    public Film put(Film film) {
+        if (film.getId() == null) { // фильм без идентификатора хранилище добавляет как новый, кэш не затрагивается
+            return filmStorage.put(film);
+        }
+        cache.invalidate(film.getId());
+        Film updated = filmStorage.put(film);
+        // после фиксации запись сбрасывается, а не заменяется: при параллельных изменениях транзакции фиксируются
+        // в произвольном порядке, и в кэше могла бы остаться более старая версия. Хранилище повышает версию фильма
+        // раньше, пока в кэше еще может лежать старый фильм, загруженный до изменения; версия повышается еще раз
+        // после сброса, так что ETag, выданный вместе со старым фильмом, перестает совпадать
+        Transactions.afterCommit(() -> {
+            cache.invalidate(film.getId());
+            versions.filmChanged(film.getId());
+        });
+        return updated;
+    }
+
+    @Override
+    public Collection<Film> findAll() {
+        return filmStorage.findAll();
+    }
+
+    @Override
+    public Collection<Film> findAll(Projection fields) {
+        return filmStorage.findAll(fields);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> action) {
+        filmStorage.streamAll(action);
+    }
+
+    @Override
+    public Collection<Film> findPage(Long after, int limit) {
+        return filmStorage.findPage(after, limit);
+    }
+
+    @Override
+    public Collection<Film> findPage(Long after, int limit, Projection fields) {
+        return filmStorage.findPage(after, limit, fields);
+    }
+
+    @Override
+    public Film getById(Long id) {
+        Film film = cache.get(id);
+        if (film == null) {
+            long version = cache.writeVersion(id);
+            film = filmStorage.getById(id);
+            cache.fill(id, copy(film), version);
+            return film;
+        }
+        return copy(film);
+    }
+
+    @Override
+    public Film getById(Long id, Projection fields) { // неполный фильм не кэшируется, из кэша отдается полный
+        if (fields.isAll()) {
+            return getById(id);
+        }
+        Film film = cache.get(id);
+        return film == null ? filmStorage.getById(id, fields) : copy(film);
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count) {
+        return filmStorage.getPopular(count);
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count, Integer genreId, Integer year) {
+        return filmStorage.getPopular(count, genreId, year);
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count, Integer genreId, Integer year, Projection fields) {
+        return filmStorage.getPopular(count, genreId, year, fields);
+    }
+
+    @Override
+    public Collection<Film> search(String query, int count) {
+        return filmStorage.search(query, count);
+    }
+
+    @Override
+    public List<FilmSuggestion> suggest(String prefix, int limit) {
+        return filmStorage.suggest(prefix, limit);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return filmStorage.addLike(filmId, userId);
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        return filmStorage.deleteLike(filmId, userId);
+    }
+
+    @Override
+    public void rebuildPopularity() {
+        filmStorage.rebuildPopularity();
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    // в кэше хранятся копии: изменение возвращенного объекта не должно менять закэшированный
+    private static Film copy(Film film) {
+        return film.toBuilder()
+                .genres(film.getGenres() == null ? null : new TreeSet<>(film.getGenres()))
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.CacheStats;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Component
+@Qualifier("CachedUserStorage")
+public class CachedUserStorage implements UserStorage { // кэш пользователей по идентификатору поверх хранилища в БД
+    private final UserStorage userStorage;
+    private final LruCache<Long, User> cache;
+
+    @Autowired
+    public CachedUserStorage(@Qualifier("UserDbStorage") UserStorage userStorage,
+                             @Value("${filmorate.cache.users.max-size:10000}") int maxSize) {
+        this.userStorage = userStorage;
+        this.cache = new LruCache<>(maxSize);
+    }
+
+    @Override
+    public User create(User user) {
+        User created = userStorage.create(user);
+        User cached = created.toBuilder().build();
+        Transactions.afterCommit(() -> cache.put(cached.getId(), cached)); // после отката в кэше ничего не остается
+        return created;
+    }
+
+    @Override
+    public User put(User user) {
+        if (user.getId() == null) { // хранилище отвечает, что пользователь не найден
+            return userStorage.put(user);
+        }
+        cache.invalidate(user.getId());
+        User updated = userStorage.put(user);
+        Transactions.afterCommit(() -> cache.invalidate(user.getId())); // не заменяется, как в CachedFilmStorage.put
+        return updated;
+    }
+
+    @Override
+    public void delete(User user) {
+        cache.invalidate(user.getId());
+        userStorage.delete(user);
+        Transactions.afterCommit(() -> cache.invalidate(user.getId()));
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return userStorage.findAll();
+    }
+
+    @Override
+    public Collection<User> findAll(Projection fields) {
+        return userStorage.findAll(fields);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> action) {
+        userStorage.streamAll(action);
+    }
+
+    @Override
+    public Collection<User> findPage(Long after, int limit) {
+        return userStorage.findPage(after, limit);
+    }
+
+    @Override
+    public Collection<User> findPage(Long after, int limit, Projection fields) {
+        return userStorage.findPage(after, limit, fields);
+    }
+
+    @Override
+    public Optional<User> getById(Long id, Projection fields) { // неполный пользователь не кэшируется
+        if (fields.isAll()) {
+            return getById(id);
+        }
+        User user = cache.get(id);
+        return user == null ? userStorage.getById(id, fields) : Optional.of(user.toBuilder().build());
+    }
+
+    @Override
+    public Optional<User> getById(Long id) {
+        User user = cache.get(id);
+        if (user == null) {
+            long version = cache.writeVersion(id);
+            Optional<User> loaded = userStorage.getById(id);
+            loaded.ifPresent(u -> cache.fill(id, u.toBuilder().build(), version));
+            return loaded;
+        }
+        return Optional.of(user.toBuilder().build());
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+}
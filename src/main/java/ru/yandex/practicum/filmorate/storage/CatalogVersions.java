@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// версии каталога для ETag: общая версия растет при любом изменении фильмов, отметок нравится и справочников,
+// версия фильма - при его добавлении и изменении. Версия повышается после того, как изменение стало видно
+// при чтении, поэтому версию нужно брать до чтения данных. Метки включают время запуска, чтобы метка,
+// выданная до перезапуска, не совпала с новой
+@Component
+public class CatalogVersions {
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong catalog = new AtomicLong();
+    private final AtomicLong reference = new AtomicLong();
+    private final Map<Long, Long> films = new ConcurrentHashMap<>(); // фильмы, изменявшиеся после запуска
+
+    public void filmChanged(long filmId) {
+        long version = catalog.incrementAndGet();
+        films.merge(filmId, version, Math::max);
+    }
+
+    public void catalogChanged() { // изменились отметки нравится, а значит и рейтинги
+        catalog.incrementAndGet();
+    }
+
+    public void referenceChanged() { // перечитаны справочники, названия жанров и рейтингов есть и в фильмах
+        reference.incrementAndGet();
+        catalog.incrementAndGet();
+    }
+
+    public String catalogTag() {
+        return epoch + "-c" + catalog.get();
+    }
+
+    public String referenceTag() {
+        return epoch + "-r" + reference.get();
+    }
+
+    public String filmTag(long filmId) {
+        return epoch + "-r" + reference.get() + "-f" + films.getOrDefault(filmId, 0L);
+    }
+}
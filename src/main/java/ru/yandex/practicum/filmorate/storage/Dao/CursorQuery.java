@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.storage.Dao;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// чтение результата запроса курсором: строки передаются обработчику по мере получения порциями по fetchSize,
+// результат целиком в памяти не собирается
+final class CursorQuery {
+
+    private CursorQuery() {
+    }
+
+    static void query(JdbcTemplate jdbcTemplate, String sql, int fetchSize, RowCallbackHandler handler,
+                      Object... args) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false); // PostgreSQL читает курсором только внутри транзакции
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < args.length; i++) {
+                    statement.setObject(i + 1, args[i]);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        handler.processRow(resultSet);
+                    }
+                }
+            } finally {
+                if (autoCommit) {
+                    finish(connection);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void finish(Connection connection) throws SQLException { // только чтение - откат
+        try {
+            connection.rollback();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
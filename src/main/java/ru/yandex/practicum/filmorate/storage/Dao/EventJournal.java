@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.storage.Dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.EventLog;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// журналы событий хранилищ (filmorate.event-log.*): выдает журнал по имени, периодически и при остановке
+// записывает контрольные точки; при выключенной настройке журналы не создаются
+@Slf4j
+@Component
+public class EventJournal {
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final Map<String, Registration> logs;
+
+    @Autowired
+    public EventJournal(@Value("${filmorate.event-log.enabled:false}") boolean enabled,
+                        @Value("${filmorate.event-log.directory:./db/events}") String directory,
+                        @Value("${filmorate.event-log.segment-bytes:67108860}") int segmentBytes) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+        this.logs = new ConcurrentHashMap<>();
+    }
+
+    // журнал с именем name или null, если журналы выключены; snapshot снимает копию состояния для контрольной точки
+    public EventLog open(String name, Supplier<EventLog.CheckpointWriter> snapshot) {
+        if (!enabled) {
+            return null;
+        }
+        EventLog eventLog = new EventLog(directory.resolve(name), segmentBytes);
+        logs.put(name, new Registration(eventLog, snapshot));
+        return eventLog;
+    }
+
+    public void checkpoint(String name) { // записать контрольную точку журнала сразу, например после перестроения
+        Registration registration = logs.get(name);
+        if (registration != null) {
+            checkpoint(name, registration);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.event-log.checkpoint-interval-ms:300000}",
+            fixedDelayString = "${filmorate.event-log.checkpoint-interval-ms:300000}")
+    public void checkpointAll() {
+        logs.forEach(this::checkpoint);
+    }
+
+    @PreDestroy
+    public void close() { // контрольная точка при остановке, чтобы следующий запуск ничего не воспроизводил
+        logs.forEach((name, registration) -> {
+            checkpoint(name, registration);
+            try {
+                registration.eventLog.close();
+            } catch (IOException e) {
+                log.error("Не удалось закрыть журнал событий {}.", name, e);
+            }
+        });
+    }
+
+    private void checkpoint(String name, Registration registration) {
+        try {
+            long start = System.nanoTime();
+            registration.eventLog.checkpoint(registration.snapshot);
+            log.info("Контрольная точка журнала {} на записи {} за {} мс.", name, registration.eventLog.sequence(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось записать контрольную точку журнала {}.", name, e);
+        }
+    }
+
+    private static class Registration {
+        private final EventLog eventLog;
+        private final Supplier<EventLog.CheckpointWriter> snapshot;
+
+        private Registration(EventLog eventLog, Supplier<EventLog.CheckpointWriter> snapshot) {
+            this.eventLog = eventLog;
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -3,28 +3,69 @@ package ru.yandex.practicum.filmorate.storage.Dao;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.*;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.storage.CatalogVersions;
+import ru.yandex.practicum.filmorate.storage.EventLog;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.Projection;
+import ru.yandex.practicum.filmorate.storage.SearchIndex;
+import ru.yandex.practicum.filmorate.storage.TitleTrie;
+import ru.yandex.practicum.filmorate.storage.Transactions;
 import ru.yandex.practicum.filmorate.validator.FilmValidator;
 
+import javax.annotation.PostConstruct;
+import java.io.DataInput;
+import java.io.IOException;
 import java.sql.*;
 import java.sql.Date;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
 @Qualifier("FilmDbStorage")
 public class FilmDbStorage implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
-    private final GenreDaoStorage genre;
+    private final QueryMetrics queryMetrics;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final EventJournal eventJournal;
+    private final CatalogVersions versions;
+    private final int streamFetchSize; // строк за одно обращение к базе при потоковой выдаче
+    private final PopularityIndex popularity = new PopularityIndex(); // рейтинг фильмов по числу отметок нравится
+    private final Map<Integer, PopularityIndex> genrePopularity = new ConcurrentHashMap<>(); // рейтинги по жанрам
+    private volatile boolean rebuildingPopularity; // новые рейтинги жанров тоже записывают изменения
+    private final ReadWriteLock likesLock = new ReentrantReadWriteLock(); // запись отметок и чтение счетчиков
+    private final Map<Long, int[]> filmGenres = new ConcurrentHashMap<>(); // жанры фильмов для рейтингов по жанрам
+    private final SearchIndex searchIndex = new SearchIndex(); // полнотекстовый поиск по названию и описанию
+    private final TitleTrie titles = new TitleTrie(popularity::getLikes); // подсказки по началу названия
+    private EventLog likesLog; // журнал событий рейтинга, null если журналы выключены
+    private static final String LIKES_LOG = "likes";
+    private static final int EVENT_FILM_CREATED = 1;
+    private static final int EVENT_LIKE_ADDED = 2;
+    private static final int EVENT_LIKE_REMOVED = 3;
     private static final String SQL_INSERT_FILM =
             "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES( ?, ?, ?, ?, ?)";
     private static final String SQL_UPDATE = "UPDATE films SET name = ?, description = ?, release_date = ?, " +
@@ -32,58 +73,161 @@ public class FilmDbStorage implements FilmStorage {
     private static final String SQL_MERGE_GENRE_FOR_FILM = "MERGE INTO film_genre (film_id, genre_id) " +
             "KEY (film_id, genre_id) VALUES (?, ?)";
     private static final String SQL_DELETE_GENRE_FILM = "DELETE FROM film_genre WHERE film_id = ?";
-    private static final String SQL_GET_FILM = "SELECT * FROM films WHERE film_id = ?";
-    private static final String SQL_GET_ALL_FILMS = "SELECT * FROM films";
-    private static final String SQL_GET_POPULAR_FILMS =
-            "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_id, COUNT (l.user_id) " +
-                    "FROM films f LEFT JOIN likes AS l ON f.film_id = l.film_id GROUP BY f.film_id  " +
-                    "ORDER BY COUNT (l.user_id) DESC LIMIT ?";
-    private static final String SQL_GET_MPA_FOR_FILM = "SELECT f.mpa_id, m.name FROM films AS f " +
-            "LEFT OUTER JOIN mpa AS m ON f.mpa_id = m.mpa_id WHERE f.film_id=?";
-    private static final String SQL_GET_GENRE_FOR_FILM = "SELECT fg.genre_id, g.name FROM film_genre AS fg " +
-            "LEFT OUTER JOIN genre AS g ON fg.genre_id = g.genre_id WHERE fg.film_id=?";
+    private static final String SQL_GET_FILM = "SELECT %s FROM films WHERE film_id = ?"; // %s - список столбцов
+    private static final String SQL_GET_ALL_FILMS = "SELECT %s FROM films";
+    private static final String SQL_STREAM_FILMS = "SELECT * FROM films ORDER BY film_id";
+    private static final String SQL_GET_FILMS_PAGE = "SELECT %s FROM films WHERE film_id > ? ORDER BY film_id LIMIT ?";
+    private static final String SQL_GET_FILMS_BY_IDS = "SELECT %s FROM films WHERE film_id IN (%s)";
+    private static final String SQL_CREATE_LIKE_FOR_FILM = "INSERT INTO likes (user_id, film_id) SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE user_id = ? AND film_id = ?)";
+    private static final String SQL_DELETE_LIKE = "DELETE FROM likes WHERE user_id = ? AND film_id = ?";
+    private static final String SQL_GET_USER_LIKES = "SELECT film_id FROM likes WHERE user_id = ?";
+    private static final String SQL_INCREMENT_LIKES_COUNT =
+            "UPDATE films SET likes_count = likes_count + 1 WHERE film_id = ?";
+    private static final String SQL_DECREMENT_LIKES_COUNT =
+            "UPDATE films SET likes_count = likes_count - 1 WHERE film_id = ?";
+    private static final String SQL_ADD_LIKES_COUNT =
+            "UPDATE films SET likes_count = likes_count + ? WHERE film_id = ?";
+    private static final String SQL_REPAIR_LIKES_COUNT = "UPDATE films f " +
+            "SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id) " +
+            "WHERE likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)";
+    private static final String SQL_GET_LIKES_COUNT = "SELECT film_id, likes_count FROM films";
+    private static final String SQL_GET_FILMS_TOTALS = "SELECT COUNT(*) AS films, " +
+            "COALESCE(SUM(likes_count), 0) AS likes FROM films";
+    private static final String SQL_GET_FILMS_TEXT = "SELECT film_id, name, description FROM films";
+    private static final String SQL_GET_ALL_FILM_GENRES = "SELECT film_id, genre_id FROM film_genre";
+    private static final String SQL_GET_POPULAR_BY_YEAR = "SELECT %s FROM films " +
+            "WHERE release_date >= ? AND release_date < ? ORDER BY likes_count DESC, film_id LIMIT ?";
+    private static final String SQL_GET_POPULAR_BY_GENRE_AND_YEAR = "SELECT %s FROM films f " +
+            "JOIN film_genre fg ON fg.film_id = f.film_id " +
+            "WHERE fg.genre_id = ? AND f.release_date >= ? AND f.release_date < ? " +
+            "ORDER BY f.likes_count DESC, f.film_id LIMIT ?";
+    private static final String SQL_GET_ALL_LIKES = "SELECT user_id, film_id FROM likes ORDER BY user_id";
+    private static final String SQL_GET_GENRE_FOR_FILMS = "SELECT film_id, genre_id FROM film_genre " +
+            "WHERE film_id IN (%s)";
+    // столбцы полей фильма для выборки по Projection; жанры дозагружаются отдельным запросом
+    private static final Map<String, String> FILM_COLUMNS = Map.of("name", "name", "description", "description",
+            "releaseDate", "release_date", "duration", "duration", "mpa", "mpa_id");
+    private static final int HYDRATION_BATCH_SIZE = 1000; // максимальное число идентификаторов в одном IN (...)
 
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate, GenreDaoStorage genre) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, QueryMetrics queryMetrics,
+                         GenreStorage genreStorage, MpaStorage mpaStorage, EventJournal eventJournal,
+                         CatalogVersions versions,
+                         @Value("${filmorate.stream.fetch-size:500}") int streamFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
-        this.genre = genre;
+        this.queryMetrics = queryMetrics;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.eventJournal = eventJournal;
+        this.versions = versions;
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    @PostConstruct
+    public void init() { // рейтинг восстанавливается из журнала событий, если он включен и сходится с базой
+        rebuildTextIndexes();
+        likesLog = eventJournal.open(LIKES_LOG, this::popularityCheckpoint);
+        if (likesLog != null && recoverPopularity()) {
+            return;
+        }
+        if (likesLog != null) {
+            try {
+                likesLog.reset();
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось очистить журнал событий " + LIKES_LOG, e);
+            }
+        }
+        rebuildPopularity();
     }
 
     @Override
     public Film create(Film film) {
         FilmValidator.validate(film);
         KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(
+        queryMetrics.record("SQL_INSERT_FILM", () -> jdbcTemplate.update(
                 connection -> {
                     PreparedStatement stmt = connection.prepareStatement(SQL_INSERT_FILM, new String[]{"film_id"});
                     stmt.setString(1, film.getName());
                     stmt.setString(2, film.getDescription());
                     stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
-                    stmt.setLong(4, film.getDuration());
+                    stmt.setObject(4, film.getDuration(), Types.INTEGER); // продолжительность необязательна
                     stmt.setLong(5, film.getMpa().getId());
                     return stmt;
-                }, keyHolder);
+                }, keyHolder));
         film.setId(keyHolder.getKey().longValue());
-        linkFilmGenre(film);
+        linkFilmGenre(List.of(film));
+        long filmId = film.getId();
+        int[] genreIds = genreIds(film);
+        Transactions.afterCommit(() -> {
+            searchIndex.index(filmId, film.getName(), film.getDescription());
+            titles.put(filmId, film.getName());
+            record(EVENT_FILM_CREATED, filmId, 0, () -> addFilm(filmId, genreIds));
+        });
         log.info("Добавлен фильм с идентификатором: {}", film.getId());
         return film;
     }
 
+    @Override
+    public List<Film> createBatch(List<Film> films) {
+        queryMetrics.record("SQL_INSERT_FILM_BATCH", () -> jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(SQL_INSERT_FILM, new String[]{"film_id"})) {
+                for (Film film : films) {
+                    stmt.setString(1, film.getName());
+                    stmt.setString(2, film.getDescription());
+                    stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+                    stmt.setObject(4, film.getDuration(), Types.INTEGER); // продолжительность необязательна
+                    stmt.setLong(5, film.getMpa().getId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    for (Film film : films) {
+                        if (!keys.next()) {
+                            throw new SQLException("Не получены идентификаторы для всех добавленных фильмов.");
+                        }
+                        film.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return films.size();
+        }));
+        linkFilmGenre(films);
+        Map<Long, int[]> genresById = films.stream().collect(Collectors.toMap(Film::getId, FilmDbStorage::genreIds));
+        Transactions.afterCommit(() -> {
+            films.forEach(film -> {
+                searchIndex.index(film.getId(), film.getName(), film.getDescription());
+                titles.put(film.getId(), film.getName());
+            });
+            genresById.forEach((id, genreIds) -> record(EVENT_FILM_CREATED, id, 0, () -> addFilm(id, genreIds)));
+        });
+        log.info("Добавлено фильмов пакетом: {}", films.size());
+        return films;
+    }
+
     @Override
     public Film put(Film film) {
         FilmValidator.validate(film);
         if (film.getId() != null && getById(film.getId()) != null) {
-            jdbcTemplate.update(SQL_UPDATE,
+            queryMetrics.record("SQL_UPDATE", () -> jdbcTemplate.update(SQL_UPDATE,
                     film.getName(),
                     film.getDescription(),
                     film.getReleaseDate(),
                     film.getDuration(),
                     film.getMpa().getId(),
                     film.getId()
-            );
-            jdbcTemplate.update(SQL_DELETE_GENRE_FILM, film.getId());
-            linkFilmGenre(film);
+            ));
+            queryMetrics.record("SQL_DELETE_GENRE_FILM", () -> jdbcTemplate.update(SQL_DELETE_GENRE_FILM, film.getId()));
+            linkFilmGenre(List.of(film));
+            long filmId = film.getId();
+            int[] genreIds = genreIds(film);
+            Transactions.afterCommit(() -> {
+                searchIndex.index(filmId, film.getName(), film.getDescription());
+                titles.put(filmId, film.getName());
+                setGenres(filmId, genreIds);
+                versions.filmChanged(filmId);
+            });
             log.info("Обновлены данные фильма: {}.", film.getName());
             return film;
         } else {
@@ -94,72 +238,503 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public Collection<Film> findAll() {
-        return jdbcTemplate.query(SQL_GET_ALL_FILMS, this::mapRowToFilm);
+        return findAll(Projection.ALL);
+    }
+
+    @Override
+    public Collection<Film> findAll(Projection fields) {
+        return hydrate(queryMetrics.record("SQL_GET_ALL_FILMS", () -> jdbcTemplate.query(
+                String.format(SQL_GET_ALL_FILMS, columns(fields, "")), filmMapper(fields))), fields);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> action) { // фильмы читаются курсором, жанры дозагружаются пакетами
+        List<Film> batch = new ArrayList<>(HYDRATION_BATCH_SIZE);
+        queryMetrics.run("SQL_STREAM_FILMS", rs -> {
+            batch.add(mapRowToFilm(rs, 0));
+            if (batch.size() == HYDRATION_BATCH_SIZE) {
+                hydrate(batch).forEach(action);
+                batch.clear();
+            }
+        }, handler -> CursorQuery.query(jdbcTemplate, SQL_STREAM_FILMS, streamFetchSize, handler));
+        hydrate(batch).forEach(action);
+    }
+
+    @Override
+    public Collection<Film> findPage(Long after, int limit) {
+        return findPage(after, limit, Projection.ALL);
+    }
+
+    @Override
+    public Collection<Film> findPage(Long after, int limit, Projection fields) {
+        return hydrate(queryMetrics.record("SQL_GET_FILMS_PAGE", () -> jdbcTemplate.query(
+                String.format(SQL_GET_FILMS_PAGE, columns(fields, "")), filmMapper(fields),
+                after == null ? 0 : after, limit)), fields);
     }
 
     @Override
     public Film getById(Long id) {
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet(SQL_GET_FILM, id);
-        if (rowSet.next()) {
-            Film film = new Film();
-            film.setId(rowSet.getLong("film_id"));
-            film.setName(rowSet.getString("name"));
-            film.setDescription(rowSet.getString("description"));
-            film.setReleaseDate(rowSet.getDate("release_date").toLocalDate());
-            film.setDuration(rowSet.getInt("duration"));
-            film.setMpa(getFilmMpa(id));
-            film.setGenres(getFilmGenres(id));
+        return getById(id, Projection.ALL);
+    }
+
+    @Override
+    public Film getById(Long id, Projection fields) {
+        List<Film> films = queryMetrics.record("SQL_GET_FILM", () -> jdbcTemplate.query(
+                String.format(SQL_GET_FILM, columns(fields, "")), filmMapper(fields), id));
+        if (!films.isEmpty()) {
+            hydrate(films, fields);
             log.info("Получен фильм с идентификатором {}.", id);
-            return film;
+            return films.get(0);
         } else {
-            throw new UserNotFoundException("В Filmorate отсутствует фильм с идентификатором № " + id);
+            throw new FilmNotFoundException("В Filmorate отсутствует фильм с идентификатором № " + id);
         }
     }
 
     @Override
     public Collection<Film> getPopular(int count) {
         log.info("Составлен список популярных фильмов");
-        return jdbcTemplate.query(SQL_GET_POPULAR_FILMS, this::mapRowToFilm, count == 0 ? 10 : count);
+        return getByIds(popularity.top(count == 0 ? 10 : count));
     }
 
-    private Mpa getFilmMpa(Long id) {
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet(SQL_GET_MPA_FOR_FILM, id);
-        if (rowSet.next()) {
-            Mpa mpa = new Mpa(rowSet.getInt("mpa_id"), rowSet.getString("name"));
-            return mpa;
-        } else {
-            return null;
+    @Override
+    public Collection<Film> search(String query, int count) { // фильмы по словам запроса, популярные выше
+        return getByIds(searchIndex.search(query, count, popularity::getLikes));
+    }
+
+    @Override
+    public List<FilmSuggestion> suggest(String prefix, int limit) {
+        return titles.suggest(prefix, limit);
+    }
+
+    // популярные фильмы жанра берутся из рейтинга жанра в памяти, с фильтром по году - запросом по индексам
+    // IDX_FILMS_RELEASE_DATE и IDX_FILM_GENRE_GENRE_ID
+    @Override
+    public Collection<Film> getPopular(int count, Integer genreId, Integer year) {
+        return getPopular(count, genreId, year, Projection.ALL);
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count, Integer genreId, Integer year, Projection fields) {
+        int limit = count == 0 ? 10 : count;
+        if (year == null) {
+            PopularityIndex index = genreId == null ? popularity : genrePopularity.get(genreId);
+            return index == null ? List.of() : getByIds(index.top(limit), fields);
+        }
+        Date from = Date.valueOf(LocalDate.of(year, 1, 1));
+        Date to = Date.valueOf(LocalDate.of(year + 1, 1, 1));
+        List<Film> films = genreId == null
+                ? queryMetrics.record("SQL_GET_POPULAR_BY_YEAR", () -> jdbcTemplate.query(
+                String.format(SQL_GET_POPULAR_BY_YEAR, columns(fields, "")), filmMapper(fields), from, to, limit))
+                : queryMetrics.record("SQL_GET_POPULAR_BY_GENRE_AND_YEAR", () -> jdbcTemplate.query(
+                String.format(SQL_GET_POPULAR_BY_GENRE_AND_YEAR, columns(fields, "f.")), filmMapper(fields),
+                genreId, from, to, limit));
+        return hydrate(films, fields);
+    }
+
+    // отметки пишутся под общей блокировкой likesLock, которая держится до применения изменения в памяти
+    // после фиксации; перестроение рейтинга читает счетчики под исключительной, поэтому каждая отметка либо
+    // уже видна в прочитанных счетчиках и применена к старому рейтингу, либо повторяется на новом
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return Transactions.holdUntilCompletion(likesLock.readLock(), () -> insertLike(filmId, userId));
+    }
+
+    private boolean insertLike(Long filmId, Long userId) { // фильм и пользователя проверяют внешние ключи
+        try {
+            if (queryMetrics.record("SQL_CREATE_LIKE_FOR_FILM",
+                    () -> jdbcTemplate.update(SQL_CREATE_LIKE_FOR_FILM, userId, filmId, userId, filmId)) == 0) {
+                return false;
+            }
+        } catch (DuplicateKeyException e) { // NOT EXISTS не атомарен: параллельная такая же отметка уже добавлена
+            return false;
+        } catch (DataIntegrityViolationException e) {
+            String message = String.valueOf(e.getMessage()).toUpperCase();
+            if (message.contains("FK_LIKES_FILM_ID")) {
+                throw new FilmNotFoundException("В Filmorate отсутствует фильм с идентификатором № " + filmId);
+            } else if (message.contains("FK_LIKES_USER_ID")) {
+                throw new UserNotFoundException("В Filmorate отсутствует пользователь с идентификатором № " + userId);
+            }
+            throw e;
         }
+        queryMetrics.record("SQL_INCREMENT_LIKES_COUNT", () -> jdbcTemplate.update(SQL_INCREMENT_LIKES_COUNT, filmId));
+        Transactions.afterCommit(() -> record(EVENT_LIKE_ADDED, filmId, userId, () -> changeLikes(filmId, 1)));
+        return true;
     }
 
-    private TreeSet<Genre> getFilmGenres(Long id) {
-        List<Genre> genresList = jdbcTemplate.query(SQL_GET_GENRE_FOR_FILM, (rs, rowNum) ->
-                new Genre(rs.getInt("genre_id"), rs.getString("name")), id);
-        if (!genresList.isEmpty()) {
-            return new TreeSet<>(genresList);
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        return Transactions.holdUntilCompletion(likesLock.readLock(), () -> removeLike(filmId, userId));
+    }
+
+    private boolean removeLike(Long filmId, Long userId) {
+        if (queryMetrics.record("SQL_DELETE_LIKE", () -> jdbcTemplate.update(SQL_DELETE_LIKE, userId, filmId)) == 0) {
+            return false;
+        }
+        queryMetrics.record("SQL_DECREMENT_LIKES_COUNT", () -> jdbcTemplate.update(SQL_DECREMENT_LIKES_COUNT, filmId));
+        Transactions.afterCommit(() -> record(EVENT_LIKE_REMOVED, filmId, userId, () -> changeLikes(filmId, -1)));
+        return true;
+    }
+
+    // пакетное применение отметок нравится, вызывается в транзакции; возвращает число изменившихся строк LIKES
+    public int applyLikes(List<LikeOperation> operations) {
+        return Transactions.holdUntilCompletion(likesLock.readLock(), () -> writeLikes(operations));
+    }
+
+    // снять все отметки пользователя перед его удалением: каскадное удаление не меняет счетчики и рейтинги фильмов;
+    // возвращает число снятых отметок
+    public int deleteUserLikes(long userId) {
+        return Transactions.holdUntilCompletion(likesLock.readLock(), () -> writeLikes(queryMetrics.record(
+                "SQL_GET_USER_LIKES", () -> jdbcTemplate.queryForList(SQL_GET_USER_LIKES, Long.class, userId)).stream()
+                .map(filmId -> new LikeOperation(filmId, userId, false))
+                .collect(Collectors.toList())));
+    }
+
+    private int writeLikes(List<LikeOperation> operations) {
+        List<Object[]> added = new ArrayList<>();
+        List<Object[]> deleted = new ArrayList<>();
+        for (LikeOperation operation : operations) {
+            if (operation.isLike()) {
+                added.add(new Object[]{operation.getUserId(), operation.getFilmId(),
+                        operation.getUserId(), operation.getFilmId()});
+            } else {
+                deleted.add(new Object[]{operation.getUserId(), operation.getFilmId()});
+            }
+        }
+        Map<Long, Integer> deltas = new HashMap<>();
+        List<LikeOperation> changed = new ArrayList<>();
+        int[] addedRows = added.isEmpty() ? new int[0] : queryMetrics.record("SQL_CREATE_LIKE_FOR_FILM_BATCH",
+                () -> jdbcTemplate.batchUpdate(SQL_CREATE_LIKE_FOR_FILM, added));
+        int[] deletedRows = deleted.isEmpty() ? new int[0] : queryMetrics.record("SQL_DELETE_LIKE_BATCH",
+                () -> jdbcTemplate.batchUpdate(SQL_DELETE_LIKE, deleted));
+        for (int i = 0; i < added.size(); i++) {
+            if (addedRows[i] > 0) {
+                deltas.merge((Long) added.get(i)[1], 1, Integer::sum);
+                changed.add(new LikeOperation((Long) added.get(i)[1], (Long) added.get(i)[0], true));
+            }
+        }
+        for (int i = 0; i < deleted.size(); i++) {
+            if (deletedRows[i] > 0) {
+                deltas.merge((Long) deleted.get(i)[1], -1, Integer::sum);
+                changed.add(new LikeOperation((Long) deleted.get(i)[1], (Long) deleted.get(i)[0], false));
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        List<Object[]> counts = deltas.entrySet().stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .collect(Collectors.toList());
+        if (!counts.isEmpty()) {
+            queryMetrics.record("SQL_ADD_LIKES_COUNT", () -> jdbcTemplate.batchUpdate(SQL_ADD_LIKES_COUNT, counts));
+        }
+        Transactions.afterCommit(() -> changed.forEach(operation -> record(
+                operation.isLike() ? EVENT_LIKE_ADDED : EVENT_LIKE_REMOVED, operation.getFilmId(),
+                operation.getUserId(), () -> changeLikes(operation.getFilmId(), operation.isLike() ? 1 : -1))));
+        return Arrays.stream(addedRows).sum() + Arrays.stream(deletedRows).sum();
+    }
+
+    @Override
+    public synchronized void rebuildPopularity() { // сверить счетчики с таблицей LIKES и перестроить по ним рейтинг
+        int repaired = queryMetrics.record("SQL_REPAIR_LIKES_COUNT", () -> jdbcTemplate.update(SQL_REPAIR_LIKES_COUNT));
+        if (repaired > 0) {
+            log.warn("Исправлены счетчики отметок нравится у {} фильмов.", repaired);
+        }
+        Map<Long, Integer> counts = new HashMap<>();
+        try {
+            // пока счетчики читаются, отметки не пишутся: все зафиксированные отметки уже применены в памяти,
+            // а отметки, примененные после снятия блокировки, повторяются на перестроенных рейтингах
+            likesLock.writeLock().lock();
+            try {
+                rebuildingPopularity = true;
+                popularity.startRebuild();
+                genrePopularity.values().forEach(PopularityIndex::startRebuild);
+                queryMetrics.run("SQL_GET_LIKES_COUNT",
+                        rs -> counts.put(rs.getLong("film_id"), rs.getInt("likes_count")),
+                        handler -> jdbcTemplate.query(SQL_GET_LIKES_COUNT, handler));
+            } finally {
+                likesLock.writeLock().unlock();
+            }
+            popularity.rebuild(counts);
+            rebuildGenrePopularity(counts);
+        } catch (RuntimeException e) {
+            popularity.cancelRebuild();
+            genrePopularity.values().forEach(PopularityIndex::cancelRebuild);
+            throw e;
+        } finally {
+            rebuildingPopularity = false;
+        }
+        titles.refresh();
+        log.info("Построен рейтинг популярности: {} фильмов.", counts.size());
+        eventJournal.checkpoint(LIKES_LOG); // журнал продолжается от перестроенного рейтинга
+        versions.catalogChanged();
+    }
+
+    public int getLikes(long filmId) { // число отметок фильма по рейтингу в памяти
+        return popularity.getLikes(filmId);
+    }
+
+    public LikesMatrix.Builder loadLikes() { // все отметки нравится для построения матрицы пользователь x фильм
+        LikesMatrix.Builder builder = new LikesMatrix.Builder();
+        queryMetrics.run("SQL_GET_ALL_LIKES", rs -> builder.add(rs.getLong("user_id"), rs.getLong("film_id")),
+                handler -> jdbcTemplate.query(SQL_GET_ALL_LIKES, handler));
+        return builder;
+    }
+
+    public List<Film> getByIds(List<Long> ids) { // фильмы в порядке переданных идентификаторов
+        return getByIds(ids, Projection.ALL);
+    }
+
+    public List<Film> getByIds(List<Long> ids, Projection fields) {
+        String columns = columns(fields, "");
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            queryMetrics.record("SQL_GET_FILMS_BY_IDS", () -> jdbcTemplate.query(
+                            String.format(SQL_GET_FILMS_BY_IDS, columns, placeholders), filmMapper(fields),
+                            batch.toArray()))
+                    .forEach(film -> filmsById.put(film.getId(), film));
+        }
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (Long id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return hydrate(films, fields);
+    }
+
+    // счетчики из контрольной точки и записей журнала; журнал сверяется с числом фильмов и суммой счетчиков
+    // в базе, при расхождении (например, база пересоздана) рейтинг строится заново запросами
+    private boolean recoverPopularity() {
+        long start = System.nanoTime();
+        Map<Long, Integer> counts = new HashMap<>();
+        try {
+            if (!likesLog.recover(in -> readCounts(in, counts),
+                    (type, filmId, userId) -> applyEvent(counts, type, filmId))) {
+                return false;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Журнал событий {} не прочитан: {}", LIKES_LOG, e.getMessage());
+            return false;
+        }
+        Map<String, Object> totals = queryMetrics.record("SQL_GET_FILMS_TOTALS",
+                () -> jdbcTemplate.queryForMap(SQL_GET_FILMS_TOTALS));
+        long likes = counts.values().stream().mapToLong(Integer::longValue).sum();
+        if (((Number) totals.get("films")).longValue() != counts.size()
+                || ((Number) totals.get("likes")).longValue() != likes) {
+            log.warn("Журнал событий {} не совпадает с базой данных: фильмов {}, отметок {}, в базе {}.",
+                    LIKES_LOG, counts.size(), likes, totals);
+            return false;
+        }
+        popularity.rebuild(counts);
+        rebuildGenrePopularity(counts);
+        titles.refresh();
+        log.info("Рейтинг популярности восстановлен из журнала: {} фильмов за {} мс.", counts.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    // поисковый индекс и дерево названий; порядок подсказок по популярности задается после построения рейтинга
+    private void rebuildTextIndexes() {
+        searchIndex.clear();
+        titles.clear();
+        queryMetrics.run("SQL_GET_FILMS_TEXT", rs -> {
+            long filmId = rs.getLong("film_id");
+            searchIndex.index(filmId, rs.getString("name"), rs.getString("description"));
+            titles.put(filmId, rs.getString("name"));
+        }, handler -> jdbcTemplate.query(SQL_GET_FILMS_TEXT, handler));
+        log.info("Построены поисковый индекс и дерево названий: {} фильмов.", searchIndex.size());
+    }
+
+    // рейтинги жанров по готовым счетчикам фильмов и таблице FILM_GENRE
+    private void rebuildGenrePopularity(Map<Long, Integer> counts) {
+        Map<Long, int[]> genresByFilm = new HashMap<>();
+        Map<Integer, Map<Long, Integer>> countsByGenre = new HashMap<>();
+        queryMetrics.run("SQL_GET_ALL_FILM_GENRES", rs -> {
+            long filmId = rs.getLong("film_id");
+            int genreId = rs.getInt("genre_id");
+            genresByFilm.merge(filmId, new int[]{genreId}, (current, added) -> {
+                int[] genres = Arrays.copyOf(current, current.length + 1);
+                genres[current.length] = added[0];
+                return genres;
+            });
+            countsByGenre.computeIfAbsent(genreId, id -> new HashMap<>()).put(filmId, counts.getOrDefault(filmId, 0));
+        }, handler -> jdbcTemplate.query(SQL_GET_ALL_FILM_GENRES, handler));
+        filmGenres.keySet().retainAll(genresByFilm.keySet());
+        filmGenres.putAll(genresByFilm);
+        // рейтинги жанров без фильмов в базе очищаются, а не удаляются: в них могут быть фильмы, получившие жанр
+        // во время перестроения
+        genrePopularity.forEach((genreId, index) -> {
+            if (!countsByGenre.containsKey(genreId)) {
+                index.rebuild(Map.of());
+            }
+        });
+        countsByGenre.forEach((genreId, genreCounts) -> genreIndex(genreId).rebuild(genreCounts));
+    }
+
+    private void addFilm(long filmId, int[] genreIds) {
+        popularity.add(filmId);
+        setGenres(filmId, genreIds);
+        versions.filmChanged(filmId);
+    }
+
+    private void changeLikes(long filmId, int delta) { // общий рейтинг и рейтинги жанров фильма
+        popularity.change(filmId, delta);
+        titles.likesChanged(filmId, delta > 0);
+        versions.catalogChanged();
+        for (int genreId : filmGenres.getOrDefault(filmId, new int[0])) {
+            genreIndex(genreId).change(filmId, delta);
+        }
+    }
+
+    private void setGenres(long filmId, int[] genreIds) { // перенести фильм в рейтинги новых жанров
+        int[] previous = filmGenres.put(filmId, genreIds);
+        for (int genreId : previous == null ? new int[0] : previous) {
+            if (Arrays.stream(genreIds).noneMatch(id -> id == genreId)) {
+                genreIndex(genreId).remove(filmId);
+            }
+        }
+        int likes = popularity.getLikes(filmId);
+        for (int genreId : genreIds) {
+            genreIndex(genreId).add(filmId, likes);
+        }
+    }
+
+    private PopularityIndex genreIndex(int genreId) {
+        return genrePopularity.computeIfAbsent(genreId, id -> {
+            PopularityIndex index = new PopularityIndex();
+            if (rebuildingPopularity) {
+                index.startRebuild();
+            }
+            return index;
+        });
+    }
+
+    private static int[] genreIds(Film film) {
+        return film.getGenres() == null ? new int[0] : film.getGenres().stream().mapToInt(Genre::getId).toArray();
+    }
+
+    private static void applyEvent(Map<Long, Integer> counts, int type, long filmId) {
+        if (type == EVENT_FILM_CREATED) {
+            counts.putIfAbsent(filmId, 0);
+        } else if (type == EVENT_LIKE_ADDED) {
+            counts.merge(filmId, 1, Integer::sum);
+        } else if (type == EVENT_LIKE_REMOVED) {
+            counts.computeIfPresent(filmId, (id, current) -> Math.max(0, current - 1));
+        }
+    }
+
+    private static void readCounts(DataInput in, Map<Long, Integer> counts) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            counts.put(in.readLong(), in.readInt());
+        }
+    }
+
+    private EventLog.CheckpointWriter popularityCheckpoint() { // вызывается под блокировкой журнала
+        Map<Long, Integer> counts = popularity.counts();
+        return out -> {
+            out.writeInt(counts.size());
+            for (Map.Entry<Long, Integer> count : counts.entrySet()) {
+                out.writeLong(count.getKey());
+                out.writeInt(count.getValue());
+            }
+        };
+    }
+
+    private void record(int type, long filmId, long userId, Runnable apply) { // событие в журнал и в рейтинг
+        if (likesLog == null) {
+            apply.run();
         } else {
-            return null;
+            likesLog.append(type, filmId, userId, apply);
         }
     }
 
-    private void linkFilmGenre(Film film) {
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            for (Genre genre : film.getGenres()) {
-                jdbcTemplate.update(SQL_MERGE_GENRE_FOR_FILM, film.getId(), genre.getId());
+    // дозагрузка жанров для списка фильмов пакетами, экземпляры жанров берутся из справочника в памяти
+    private List<Film> hydrate(List<Film> films) {
+        return hydrate(films, Projection.ALL);
+    }
+
+    private List<Film> hydrate(List<Film> films, Projection fields) { // жанры не читаются, если они не запрошены
+        if (!fields.has("genres")) {
+            return films;
+        }
+        for (int from = 0; from < films.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Film> batch = films.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, films.size()));
+            Map<Long, Film> filmsById = new HashMap<>();
+            for (Film film : batch) {
+                filmsById.put(film.getId(), film);
+            }
+            String placeholders = String.join(", ", Collections.nCopies(filmsById.size(), "?"));
+            Object[] ids = filmsById.keySet().toArray();
+            queryMetrics.run("SQL_GET_GENRE_FOR_FILMS", rs -> {
+                Film film = filmsById.get(rs.getLong("film_id"));
+                if (film.getGenres() == null) {
+                    film.setGenres(new TreeSet<>());
+                }
+                film.getGenres().add(genreStorage.getGenreById(rs.getInt("genre_id")));
+            }, handler -> jdbcTemplate.query(String.format(SQL_GET_GENRE_FOR_FILMS, placeholders), handler, ids));
+        }
+        return films;
+    }
+
+    private void linkFilmGenre(List<Film> films) { // связи фильмов с жанрами записываются одним пакетом
+        List<Object[]> links = new ArrayList<>();
+        for (Film film : films) {
+            if (film.getGenres() != null) {
+                for (Genre genre : film.getGenres()) {
+                    links.add(new Object[]{film.getId(), genre.getId()});
+                }
             }
         }
+        if (!links.isEmpty()) {
+            queryMetrics.record("SQL_MERGE_GENRE_FOR_FILM",
+                    () -> jdbcTemplate.batchUpdate(SQL_MERGE_GENRE_FOR_FILM, links));
+        }
+    }
+
+    private static String columns(Projection fields, String alias) {
+        return fields.columns(alias, "film_id", FILM_COLUMNS);
+    }
+
+    private RowMapper<Film> filmMapper(Projection fields) { // читает только столбцы запрошенных полей
+        if (fields.isAll()) {
+            return this::mapRowToFilm;
+        }
+        return (resultSet, rowNum) -> {
+            Film film = Film.builder().id(resultSet.getLong("film_id")).build();
+            if (fields.has("name")) {
+                film.setName(resultSet.getString("name"));
+            }
+            if (fields.has("description")) {
+                film.setDescription(resultSet.getString("description"));
+            }
+            if (fields.has("releaseDate")) {
+                film.setReleaseDate(resultSet.getDate("release_date").toLocalDate());
+            }
+            if (fields.has("duration")) {
+                film.setDuration(resultSet.getObject("duration", Integer.class));
+            }
+            if (fields.has("mpa")) {
+                int mpaId = resultSet.getInt("mpa_id");
+                film.setMpa(resultSet.wasNull() ? null : mpaStorage.getMpaById(mpaId));
+            }
+            return film;
+        };
     }
 
     private Film mapRowToFilm(ResultSet resultSet, int rowNum) {
         try {
         Long filmId = resultSet.getLong("film_id");
+        int mpaId = resultSet.getInt("mpa_id");
+        boolean noMpa = resultSet.wasNull(); // сразу после чтения mpa_id, до чтения других столбцов
         return Film.builder()
                 .id(filmId)
                 .name(resultSet.getString("name"))
                 .description(resultSet.getString("description"))
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
-                .duration(resultSet.getInt("duration"))
-                .mpa(new Mpa(resultSet.getInt("mpa_id")))
+                .duration(resultSet.getObject("duration", Integer.class))
+                .mpa(noMpa ? null : mpaStorage.getMpaById(mpaId))
                 .build();
         } catch (SQLException e) {
             throw new RuntimeException(e);
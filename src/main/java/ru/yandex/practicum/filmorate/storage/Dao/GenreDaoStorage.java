@@ -13,17 +13,19 @@ import java.util.List;
 @Component
 public class GenreDaoStorage implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final QueryMetrics queryMetrics;
     private static final String SQL_GET_GENRE = "SELECT genre_id, name FROM genre WHERE genre_id = ?";
     private static final String SQL_GET_ALL_GENRE = "SELECT genre_id, name FROM genre";
 
-    public GenreDaoStorage(JdbcTemplate jdbcTemplate) {
+    public GenreDaoStorage(JdbcTemplate jdbcTemplate, QueryMetrics queryMetrics) {
         this.jdbcTemplate = jdbcTemplate;
+        this.queryMetrics = queryMetrics;
     }
 
     @Override
     public Genre getGenreById(int id) {
         try {
-            SqlRowSet rowSet = jdbcTemplate.queryForRowSet(SQL_GET_GENRE, id);
+            SqlRowSet rowSet = queryMetrics.record("SQL_GET_GENRE", () -> jdbcTemplate.queryForRowSet(SQL_GET_GENRE, id));
             if (rowSet.next()) {
                 return new Genre(
                         rowSet.getInt("genre_id"),
@@ -40,9 +42,9 @@ public class GenreDaoStorage implements GenreStorage {
 
     @Override
     public List<Genre> getAllGenres() {
-        return jdbcTemplate.query(SQL_GET_ALL_GENRE, (rs, rowNum) -> new Genre(
+        return queryMetrics.record("SQL_GET_ALL_GENRE", () -> jdbcTemplate.query(SQL_GET_ALL_GENRE, (rs, rowNum) -> new Genre(
                 rs.getInt("genre_id"),
                 rs.getString("name"))
-        );
+        ));
     }
 }
@@ -13,17 +13,19 @@ import java.util.List;
 @Component
 public class MpaDaoStorage implements MpaStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final QueryMetrics queryMetrics;
     private static final String SQL_GET_MPA = "SELECT mpa_id, name FROM mpa WHERE mpa_id = ?";
     private static final String SQL_GET_ALL_MPA = "SELECT mpa_id, name FROM mpa";
 
-    public MpaDaoStorage(JdbcTemplate jdbcTemplate) {
+    public MpaDaoStorage(JdbcTemplate jdbcTemplate, QueryMetrics queryMetrics) {
         this.jdbcTemplate = jdbcTemplate;
+        this.queryMetrics = queryMetrics;
     }
 
     @Override
     public Mpa getMpaById(int id) {
         try {
-            SqlRowSet rowSet = jdbcTemplate.queryForRowSet(SQL_GET_MPA, id);
+            SqlRowSet rowSet = queryMetrics.record("SQL_GET_MPA", () -> jdbcTemplate.queryForRowSet(SQL_GET_MPA, id));
             if (rowSet.next()) {
                 return new Mpa(
                         rowSet.getInt("mpa_id"),
@@ -40,9 +42,9 @@ public class MpaDaoStorage implements MpaStorage {
 
     @Override
     public List<Mpa> getAllMpa() {
-        return jdbcTemplate.query(SQL_GET_ALL_MPA, (rs, rowNum) -> new Mpa(
+        return queryMetrics.record("SQL_GET_ALL_MPA", () -> jdbcTemplate.query(SQL_GET_ALL_MPA, (rs, rowNum) -> new Mpa(
                 rs.getInt("mpa_id"),
                 rs.getString("name"))
-        );
+        ));
     }
 }
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.storage.Dao;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// метрики SQL-запросов по имени константы запроса (тег query), доступны через /actuator/metrics:
+// filmorate.jdbc.query - время выполнения с гистограммой и процентилями, filmorate.jdbc.rows - число строк,
+// filmorate.jdbc.errors - число ошибок
+@Component
+public class QueryMetrics {
+    private static final String TIMER = "filmorate.jdbc.query";
+    private static final String ROWS = "filmorate.jdbc.rows";
+    private static final String ERRORS = "filmorate.jdbc.errors";
+    private final MeterRegistry registry;
+    private final Map<String, QueryMeters> meters;
+
+    public QueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.meters = new ConcurrentHashMap<>();
+    }
+
+    public <T> T record(String query, Supplier<T> call) { // выполнить запрос и учесть его в метриках
+        QueryMeters queryMeters = meters.computeIfAbsent(query, this::register);
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            queryMeters.errors.increment();
+            throw e;
+        } finally {
+            queryMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        int rows = rows(result);
+        if (rows >= 0) {
+            queryMeters.rows.record(rows);
+        }
+        return result;
+    }
+
+    // запрос, строки которого обрабатывает handler: call выполняет запрос с переданным ему обработчиком,
+    // который считает строки перед передачей их handler
+    public void run(String query, RowCallbackHandler handler, Consumer<RowCallbackHandler> call) {
+        QueryMeters queryMeters = meters.computeIfAbsent(query, this::register);
+        long[] rows = new long[1];
+        record(query, () -> {
+            call.accept(rs -> {
+                rows[0]++;
+                handler.processRow(rs);
+            });
+            return null;
+        });
+        queryMeters.rows.record(rows[0]);
+    }
+
+    private static int rows(Object result) { // число строк результата или -1, если его нельзя определить
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        } else if (result instanceof Integer) {
+            return (Integer) result;
+        } else if (result instanceof int[]) {
+            int sum = 0;
+            for (int count : (int[]) result) {
+                sum += Math.max(count, 0);
+            }
+            return sum;
+        } else if (result instanceof long[]) {
+            return ((long[]) result).length;
+        } else if (result instanceof SqlRowSet) { // результат уже в памяти, после подсчета курсор возвращается в начало
+            SqlRowSet rowSet = (SqlRowSet) result;
+            int rows = rowSet.last() ? rowSet.getRow() : 0;
+            rowSet.beforeFirst();
+            return rows;
+        }
+        return -1;
+    }
+
+    private QueryMeters register(String query) {
+        Timer timer = Timer.builder(TIMER)
+                .tag("query", query)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+        DistributionSummary rows = DistributionSummary.builder(ROWS)
+                .tag("query", query)
+                .register(registry);
+        Counter errors = Counter.builder(ERRORS)
+                .tag("query", query)
+                .register(registry);
+        return new QueryMeters(timer, rows, errors);
+    }
+
+    private static final class QueryMeters {
+        private final Timer timer;
+        private final DistributionSummary rows;
+        private final Counter errors;
+
+        private QueryMeters(Timer timer, DistributionSummary rows, Counter errors) {
+            this.timer = timer;
+            this.rows = rows;
+            this.errors = errors;
+        }
+    }
+}
@@ -3,30 +3,49 @@ package ru.yandex.practicum.filmorate.storage.Dao;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.UserAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EventLog;
+import ru.yandex.practicum.filmorate.storage.FriendsIndex;
+import ru.yandex.practicum.filmorate.storage.Projection;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 import ru.yandex.practicum.filmorate.validator.UserValidator;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Slf4j
 @Repository
 @Qualifier("UserDbStorage")
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final QueryMetrics queryMetrics;
+    private final EventJournal eventJournal;
+    private final FilmDbStorage filmDbStorage;
+    private final int streamFetchSize; // строк за одно обращение к базе при потоковой выдаче
+    private final FriendsIndex friendsIndex = new FriendsIndex(); // граф дружбы в памяти
+    private EventLog friendsLog; // журнал событий графа дружбы, null если журналы выключены
+    private static final String FRIENDS_LOG = "friends";
+    private static final int EVENT_FRIEND_ADDED = 1;
+    private static final int EVENT_FRIEND_REMOVED = 2;
+    private static final int EVENT_USER_DELETED = 3;
     private static final String SQL_INSERT_USER = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
     private static final String SQL_INSERT_FRIEND = "INSERT INTO friendship (user_id, friend_id) " +
             "VALUES (?, ?)";
@@ -35,13 +54,50 @@ public class UserDbStorage implements UserStorage {
     private static final String SQL_DELETE_USER = "DELETE FROM users WHERE user_id = ?";
     private static final String SQL_DELETE_FRIEND = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
     private static final String SQL_GET_USER = "SELECT * FROM users WHERE user_id = ?";
-    private static final String SQL_GET_ALL_USERS = "SELECT * FROM users";
+    private static final String SQL_GET_USER_FIELDS = "SELECT %s FROM users WHERE user_id = ?"; // %s - столбцы
+    private static final String SQL_GET_ALL_USERS = "SELECT %s FROM users";
+    private static final String SQL_STREAM_USERS = "SELECT * FROM users ORDER BY user_id";
+    private static final String SQL_GET_USERS_PAGE = "SELECT %s FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
     private static final String SQL_GET_FRIENDS = "SELECT * FROM users u JOIN friendship f " +
             "ON u.user_id = f.friend_id WHERE f.user_id = ?";
+    private static final String SQL_GET_ALL_FRIENDSHIPS = "SELECT user_id, friend_id FROM friendship " +
+            "ORDER BY user_id, friend_id";
+    private static final String SQL_COUNT_FRIENDSHIPS = "SELECT COUNT(*) FROM friendship";
+    private static final String SQL_GET_USERS_BY_IDS = "SELECT * FROM users WHERE user_id IN (%s)";
+    // столбцы полей пользователя для выборки по Projection; имя без логина не построить - User.getName()
+    private static final Map<String, String> USER_COLUMNS = Map.of("email", "email", "login", "login",
+            "name", "name, login", "birthday", "birthday");
+    private static final int IDS_BATCH_SIZE = 1000; // максимальное число идентификаторов в одном IN (...)
 
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, QueryMetrics queryMetrics, EventJournal eventJournal,
+                         FilmDbStorage filmDbStorage,
+                         @Value("${filmorate.stream.fetch-size:500}") int streamFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.queryMetrics = queryMetrics;
+        this.eventJournal = eventJournal;
+        this.filmDbStorage = filmDbStorage;
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    @PostConstruct
+    public void init() { // граф дружбы из журнала событий, если он включен и сходится с базой, иначе по таблице FRIENDSHIP
+        friendsLog = eventJournal.open(FRIENDS_LOG, this::friendsCheckpoint);
+        if (friendsLog != null && recoverFriends()) {
+            return;
+        }
+        AdjacencyBuilder builder = new AdjacencyBuilder();
+        queryMetrics.run("SQL_GET_ALL_FRIENDSHIPS", builder,
+                handler -> jdbcTemplate.query(SQL_GET_ALL_FRIENDSHIPS, handler));
+        friendsIndex.rebuild(builder.build());
+        if (friendsLog != null) {
+            try {
+                friendsLog.reset();
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось очистить журнал событий " + FRIENDS_LOG, e);
+            }
+            eventJournal.checkpoint(FRIENDS_LOG);
+        }
     }
 
     @Override
@@ -49,7 +105,7 @@ public class UserDbStorage implements UserStorage {
         UserValidator.validate(user);
         KeyHolder keyHolder = new GeneratedKeyHolder();
         try {
-            jdbcTemplate.update(
+            queryMetrics.record("SQL_INSERT_USER", () -> jdbcTemplate.update(
                     connection -> {
                         PreparedStatement stmt = connection.prepareStatement(SQL_INSERT_USER, new String[]{"user_id"});
                         stmt.setString(1, user.getEmail());
@@ -57,7 +113,7 @@ public class UserDbStorage implements UserStorage {
                         stmt.setString(3, user.getName());
                         stmt.setDate(4, Date.valueOf(user.getBirthday()));
                         return stmt;
-                    }, keyHolder);
+                    }, keyHolder));
             user.setId(keyHolder.getKey().longValue());
             log.info("Добавлен пользователь с идентификатором: {}", user.getId());
             return user;
@@ -72,22 +128,29 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    @Transactional
     public void delete(User user) {
-        jdbcTemplate.update(SQL_DELETE_USER, user.getId());
+        filmDbStorage.deleteUserLikes(user.getId()); // со счетчиками фильмов, а не каскадом
+        if (queryMetrics.record("SQL_DELETE_USER", () -> jdbcTemplate.update(SQL_DELETE_USER, user.getId())) > 0) {
+            // дружба удаляется каскадно
+            record(EVENT_USER_DELETED, user.getId(), 0, () -> friendsIndex.removeUser(user.getId()));
+        }
     }
 
     @Override
     public User put(User user) {
         UserValidator.validate(user);
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet(SQL_GET_USER, user.getId());
+        SqlRowSet rowSet = queryMetrics.record("SQL_GET_USER",
+                () -> jdbcTemplate.queryForRowSet(SQL_GET_USER, user.getId()));
         if (rowSet.next()) {
-            jdbcTemplate.update(SQL_UPDATE,
+            queryMetrics.record("SQL_UPDATE", () -> jdbcTemplate.update(SQL_UPDATE,
                     user.getEmail(),
                     user.getLogin(),
                     user.getName(),
                     Date.valueOf(user.getBirthday()),
                     user.getId()
-            );
+            ));
             log.info("Обновлены данные пользователя: {}.", user.getName());
             return user;
         } else {
@@ -97,12 +160,36 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public List<User> findAll() {
-        return jdbcTemplate.query(SQL_GET_ALL_USERS, this::mapRowToUser);
+        return findAll(Projection.ALL);
+    }
+
+    @Override
+    public List<User> findAll(Projection fields) {
+        return queryMetrics.record("SQL_GET_ALL_USERS", () -> jdbcTemplate.query(
+                String.format(SQL_GET_ALL_USERS, columns(fields)), userMapper(fields)));
+    }
+
+    @Override
+    public void streamAll(Consumer<User> action) {
+        queryMetrics.run("SQL_STREAM_USERS", rs -> action.accept(mapRowToUser(rs, 0)),
+                handler -> CursorQuery.query(jdbcTemplate, SQL_STREAM_USERS, streamFetchSize, handler));
+    }
+
+    @Override
+    public List<User> findPage(Long after, int limit) {
+        return findPage(after, limit, Projection.ALL);
+    }
+
+    @Override
+    public List<User> findPage(Long after, int limit, Projection fields) {
+        return queryMetrics.record("SQL_GET_USERS_PAGE", () -> jdbcTemplate.query(
+                String.format(SQL_GET_USERS_PAGE, columns(fields)), userMapper(fields),
+                after == null ? 0 : after, limit));
     }
 
     @Override
     public Optional<User> getById(Long id) {
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet(SQL_GET_USER, id);
+        SqlRowSet rowSet = queryMetrics.record("SQL_GET_USER", () -> jdbcTemplate.queryForRowSet(SQL_GET_USER, id));
         if (rowSet.next()) {
             User user = new User(rowSet.getLong("user_id"),
                     rowSet.getString("email"),
@@ -115,29 +202,161 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    public Optional<User> getById(Long id, Projection fields) {
+        if (fields.isAll()) {
+            return getById(id);
+        }
+        List<User> users = queryMetrics.record("SQL_GET_USER", () -> jdbcTemplate.query(
+                String.format(SQL_GET_USER_FIELDS, columns(fields)), userMapper(fields), id));
+        if (users.isEmpty()) {
+            throw new UserNotFoundException("В Filmorate отсутствует пользователь с идентификатором № " + id);
+        }
+        return Optional.of(users.get(0));
+    }
+
     public Collection<User> getUserFriends(Long userId) {
-        return jdbcTemplate.query(SQL_GET_FRIENDS, this::mapRowToUser, userId);
+        return queryMetrics.record("SQL_GET_FRIENDS",
+                () -> jdbcTemplate.query(SQL_GET_FRIENDS, this::mapRowToUser, userId));
+    }
+
+    public void streamUserFriends(Long userId, Consumer<User> action) {
+        queryMetrics.run("SQL_GET_FRIENDS", rs -> action.accept(mapRowToUser(rs, 0)),
+                handler -> CursorQuery.query(jdbcTemplate, SQL_GET_FRIENDS, streamFetchSize, handler, userId));
     }
 
     public void addFriend(Long userId, Long friendId) {
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet(SQL_GET_USER, friendId);
+        SqlRowSet userRows = queryMetrics.record("SQL_GET_USER",
+                () -> jdbcTemplate.queryForRowSet(SQL_GET_USER, friendId));
         if (!userRows.next()) {
             throw new UserNotFoundException("В Filmorate отсутствует пользователь с идентификатором №: " + friendId);
         }
-        jdbcTemplate.update(SQL_INSERT_FRIEND, userId, friendId);
+        queryMetrics.record("SQL_INSERT_FRIEND", () -> jdbcTemplate.update(SQL_INSERT_FRIEND, userId, friendId));
+        record(EVENT_FRIEND_ADDED, userId, friendId, () -> friendsIndex.add(userId, friendId));
         log.info("Пользователь {} добавлен в список друзей пользователя {}.", userId, friendId);
     }
 
     public void deleteFriend(Long userId, Long friendId) {
-        jdbcTemplate.update(SQL_DELETE_FRIEND, userId, friendId);
+        if (queryMetrics.record("SQL_DELETE_FRIEND",
+                () -> jdbcTemplate.update(SQL_DELETE_FRIEND, userId, friendId)) > 0) {
+            record(EVENT_FRIEND_REMOVED, userId, friendId, () -> friendsIndex.remove(userId, friendId));
+        }
         log.info("Пользователь {} исключен из списка друзей.", friendId);
     }
 
-    public Collection<User> getCommonFriends(Long userId, Long friendId) {
-        return getUserFriends(userId).stream()
-                .distinct()
-                .filter(o -> getUserFriends(friendId).contains(o))
-                .collect(Collectors.toSet());
+    public Collection<User> getCommonFriends(Long userId, Long friendId) { // общие друзья в порядке id
+        return getByIds(FriendsIndex.intersect(friendsIndex.get(userId), friendsIndex.get(friendId)));
+    }
+
+    // друзья друзей пользователя по убыванию числа общих друзей
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        return getByIds(friendsIndex.suggest(userId, count));
+    }
+
+    public List<User> getByIds(long[] ids) { // пользователи в порядке переданных идентификаторов
+        Map<Long, User> usersById = new HashMap<>();
+        for (int from = 0; from < ids.length; from += IDS_BATCH_SIZE) {
+            Object[] batch = Arrays.stream(ids, from, Math.min(from + IDS_BATCH_SIZE, ids.length)).boxed().toArray();
+            String placeholders = String.join(", ", Collections.nCopies(batch.length, "?"));
+            queryMetrics.record("SQL_GET_USERS_BY_IDS", () -> jdbcTemplate.query(
+                            String.format(SQL_GET_USERS_BY_IDS, placeholders), this::mapRowToUser, batch))
+                    .forEach(user -> usersById.put(user.getId(), user));
+        }
+        List<User> users = new ArrayList<>(usersById.size());
+        for (long id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    // граф из контрольной точки и записей журнала; журнал сверяется с числом дружб в базе,
+    // при расхождении граф строится заново запросом
+    private boolean recoverFriends() {
+        long start = System.nanoTime();
+        try {
+            if (!friendsLog.recover(in -> {
+                Map<Long, long[]> adjacency = new HashMap<>();
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    adjacency.put(in.readLong(), EventLog.readLongArray(in));
+                }
+                friendsIndex.rebuild(adjacency);
+            }, this::applyEvent)) {
+                return false;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Журнал событий {} не прочитан: {}", FRIENDS_LOG, e.getMessage());
+            return false;
+        }
+        long friendships = friendsIndex.snapshot().values().stream().mapToLong(friends -> friends.length).sum();
+        Long expected = queryMetrics.record("SQL_COUNT_FRIENDSHIPS",
+                () -> jdbcTemplate.queryForObject(SQL_COUNT_FRIENDSHIPS, Long.class));
+        if (expected == null || expected != friendships) {
+            log.warn("Журнал событий {} не совпадает с базой данных: дружб {}, в базе {}.",
+                    FRIENDS_LOG, friendships, expected);
+            return false;
+        }
+        log.info("Граф дружбы восстановлен из журнала: {} дружб за {} мс.", friendships,
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    private void applyEvent(int type, long userId, long friendId) {
+        if (type == EVENT_FRIEND_ADDED) {
+            friendsIndex.add(userId, friendId);
+        } else if (type == EVENT_FRIEND_REMOVED) {
+            friendsIndex.remove(userId, friendId);
+        } else if (type == EVENT_USER_DELETED) {
+            friendsIndex.removeUser(userId);
+        }
+    }
+
+    private EventLog.CheckpointWriter friendsCheckpoint() { // вызывается под блокировкой журнала
+        Map<Long, long[]> adjacency = friendsIndex.snapshot();
+        return out -> {
+            out.writeInt(adjacency.size());
+            for (Map.Entry<Long, long[]> friends : adjacency.entrySet()) {
+                out.writeLong(friends.getKey());
+                EventLog.writeLongArray(out, friends.getValue());
+            }
+        };
+    }
+
+    private void record(int type, long userId, long friendId, Runnable apply) { // событие в журнал и в граф
+        if (friendsLog == null) {
+            apply.run();
+        } else {
+            friendsLog.append(type, userId, friendId, apply);
+        }
+    }
+
+    private static String columns(Projection fields) {
+        return fields.columns("", "user_id", USER_COLUMNS);
+    }
+
+    private RowMapper<User> userMapper(Projection fields) { // читает только столбцы запрошенных полей
+        if (fields.isAll()) {
+            return this::mapRowToUser;
+        }
+        return (resultSet, rowNum) -> {
+            User user = User.builder().id(resultSet.getLong("user_id")).build();
+            if (fields.has("email")) {
+                user.setEmail(resultSet.getString("email"));
+            }
+            if (fields.has("login") || fields.has("name")) {
+                user.setLogin(resultSet.getString("login"));
+            }
+            if (fields.has("name")) {
+                user.setName(resultSet.getString("name"));
+            }
+            if (fields.has("birthday")) {
+                user.setBirthday(resultSet.getDate("birthday").toLocalDate());
+            }
+            return user;
+        };
     }
 
     private User mapRowToUser(ResultSet resultSet, int i) throws SQLException {
@@ -149,4 +368,37 @@ public class UserDbStorage implements UserStorage {
                 .birthday(resultSet.getDate("birthday").toLocalDate())
                 .build();
     }
+
+    // собирает отсортированные списки друзей из строк FRIENDSHIP, упорядоченных по user_id и friend_id
+    private static class AdjacencyBuilder implements RowCallbackHandler {
+        private final Map<Long, long[]> adjacency = new HashMap<>();
+        private long[] friends = new long[16];
+        private int size;
+        private long userId = -1;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("user_id");
+            if (id != userId) {
+                flush();
+                userId = id;
+            }
+            if (size == friends.length) {
+                friends = Arrays.copyOf(friends, size * 2);
+            }
+            friends[size++] = rs.getLong("friend_id");
+        }
+
+        private void flush() {
+            if (size > 0) {
+                adjacency.put(userId, Arrays.copyOf(friends, size));
+                size = 0;
+            }
+        }
+
+        private Map<Long, long[]> build() {
+            flush();
+            return adjacency;
+        }
+    }
 }
@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// журнал событий только на дозапись: записи фиксированного размера (тип, два идентификатора) пишутся в сегменты
+// через отображение файла в память; контрольная точка хранит состояние производных структур на номер записи,
+// при восстановлении читается контрольная точка и воспроизводятся только записи после нее
+public class EventLog implements Closeable {
+    public static final int RECORD_SIZE = 20; // int тип + long + long
+    private static final long CHECKPOINT_MAGIC = 0x464D4C4F47435031L;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint.bin";
+    private static final String CHECKPOINT_TMP = "checkpoint.tmp";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final Object checkpointLock = new Object(); // контрольные точки пишутся по одной
+    private FileChannel channel; // текущий сегмент
+    private MappedByteBuffer segment;
+    private long segmentStart; // номер первой записи текущего сегмента
+    private long sequence; // номер следующей записи
+
+    public interface Handler { // применение записи при воспроизведении
+        void apply(int type, long first, long second);
+    }
+
+    public interface CheckpointReader {
+        void read(DataInput in) throws IOException;
+    }
+
+    public interface CheckpointWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    public EventLog(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.recordsPerSegment = Math.max(1, segmentBytes / RECORD_SIZE);
+    }
+
+    // прочитать контрольную точку и воспроизвести записи после нее; false, если журнал пуст или поврежден -
+    // тогда состояние нужно построить заново и вызвать reset
+    public synchronized boolean recover(CheckpointReader reader, Handler handler) throws IOException {
+        Files.createDirectories(directory);
+        long from = 0;
+        boolean found = false;
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        if (Files.exists(checkpoint)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+                if (in.readLong() != CHECKPOINT_MAGIC) {
+                    return false;
+                }
+                from = in.readLong();
+                reader.read(in);
+            } catch (EOFException e) {
+                return false;
+            }
+            found = true;
+        }
+        List<Long> starts = segmentStarts();
+        long expected = from;
+        for (int i = 0; i < starts.size(); i++) {
+            long start = starts.get(i);
+            long end = i + 1 < starts.size() ? starts.get(i + 1) : Long.MAX_VALUE;
+            if (end <= from) {
+                continue; // сегмент целиком покрыт контрольной точкой
+            }
+            if (start > expected) {
+                return false; // пропущены записи
+            }
+            expected = replay(start, from, handler);
+            found = true;
+        }
+        sequence = expected;
+        openSegment(starts.isEmpty() || starts.get(starts.size() - 1) + recordsPerSegment <= sequence
+                ? sequence : starts.get(starts.size() - 1));
+        return found;
+    }
+
+    public synchronized void reset() throws IOException { // удалить журнал и начать заново с пустого
+        closeSegment();
+        Files.createDirectories(directory);
+        for (long start : segmentStarts()) {
+            Files.delete(segmentPath(start));
+        }
+        Files.deleteIfExists(directory.resolve(CHECKPOINT));
+        sequence = 0;
+        openSegment(0);
+    }
+
+    // дописать запись и применить изменение в памяти; порядок изменений совпадает с порядком записей,
+    // поэтому контрольная точка видит состояние ровно на свой номер записи
+    public synchronized void append(int type, long first, long second, Runnable apply) {
+        if (type == 0) {
+            throw new IllegalArgumentException("Тип записи журнала не может быть нулевым");
+        }
+        if (sequence - segmentStart == recordsPerSegment) {
+            try {
+                segment.force();
+                closeSegment();
+                openSegment(sequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        int position = (int) (sequence - segmentStart) * RECORD_SIZE;
+        segment.putLong(position + 4, first);
+        segment.putLong(position + 12, second);
+        // запись с нулевым типом (незаписанная часть сегмента) считается концом журнала. Порядок записи полей
+        // не защищает от оборванной записи: страницы отображенного файла сбрасываются на диск в произвольном порядке,
+        // поэтому после сбоя тип может оказаться на диске без идентификаторов. Страховка от этого - сверка итогов
+        // восстановленного состояния с базой при запуске (FilmDbStorage, UserDbStorage): при расхождении индексы
+        // строятся запросами
+        segment.putInt(position, type);
+        sequence++;
+        apply.run();
+    }
+
+    public synchronized long sequence() {
+        return sequence;
+    }
+
+    // записать контрольную точку: capture снимает копию состояния под блокировкой журнала,
+    // запись файла и удаление покрытых сегментов идут уже без нее
+    public void checkpoint(Supplier<CheckpointWriter> capture) throws IOException {
+        synchronized (checkpointLock) {
+            long position;
+            CheckpointWriter writer;
+            synchronized (this) {
+                segment.force();
+                position = sequence;
+                writer = capture.get();
+            }
+            Path tmp = directory.resolve(CHECKPOINT_TMP);
+            try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeLong(CHECKPOINT_MAGIC);
+                out.writeLong(position);
+                writer.write(out);
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(tmp, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                List<Long> starts = segmentStarts();
+                for (int i = 0; i + 1 < starts.size() && starts.get(i + 1) <= position; i++) {
+                    Files.delete(segmentPath(starts.get(i)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        closeSegment();
+    }
+
+    private long replay(long start, long from, Handler handler) throws IOException { // номер записи после последней
+        try (FileChannel file = FileChannel.open(segmentPath(start), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            long next = start;
+            for (int position = 0; position + RECORD_SIZE <= buffer.limit(); position += RECORD_SIZE, next++) {
+                int type = buffer.getInt(position);
+                if (type == 0) {
+                    break;
+                }
+                if (next >= from) {
+                    handler.apply(type, buffer.getLong(position + 4), buffer.getLong(position + 12));
+                }
+            }
+            return Math.max(next, from);
+        }
+    }
+
+    private void openSegment(long start) throws IOException {
+        channel = FileChannel.open(segmentPath(start), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        segmentStart = start;
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            channel.close(); // отображение освобождается сборщиком мусора
+            channel = null;
+            segment = null;
+        }
+    }
+
+    private List<Long> segmentStarts() throws IOException { // номера первых записей сегментов по возрастанию
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long start) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+    }
+
+    public static void writeLongArray(DataOutput out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    public static long[] readLongArray(DataInput in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+}
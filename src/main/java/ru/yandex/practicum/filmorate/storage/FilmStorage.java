@@ -1,18 +1,47 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Film create(Film film);
 
+    List<Film> createBatch(List<Film> films); // добавить фильмы одним пакетом, все или ни одного
+
     Film put(Film film);
 
     Collection<Film> findAll();
 
+    Collection<Film> findAll(Projection fields); // все фильмы, у которых заполнены только поля fields
+
+    void streamAll(Consumer<Film> action); // передать все фильмы по одному, не собирая их в список
+
+    Collection<Film> findPage(Long after, int limit); // страница фильмов с идентификатором больше after
+
+    Collection<Film> findPage(Long after, int limit, Projection fields);
+
     Film getById(Long id);
 
+    Film getById(Long id, Projection fields);
+
     Collection<Film> getPopular(int count);
+
+    Collection<Film> getPopular(int count, Integer genreId, Integer year); // популярные фильмы жанра и/или года
+
+    Collection<Film> getPopular(int count, Integer genreId, Integer year, Projection fields);
+
+    Collection<Film> search(String query, int count); // фильмы по словам из названия и описания
+
+    List<FilmSuggestion> suggest(String prefix, int limit); // популярные фильмы с названием, начинающимся с prefix
+
+    boolean addLike(Long filmId, Long userId); // true, если отметка нравится добавлена
+
+    boolean deleteLike(Long filmId, Long userId); // true, если отметка нравится удалена
+
+    void rebuildPopularity(); // перестроить рейтинг популярности по отметкам нравится
 }
@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+
+// граф дружбы в памяти: списки друзей пользователей в виде отсортированных массивов идентификаторов
+public class FriendsIndex {
+    private static final long[] EMPTY = new long[0];
+    private static final int PARALLEL_FAN_OUT = 100_000; // с какого числа друзей друзей обход выполняется параллельно
+    private final Map<Long, long[]> friends; // массивы не изменяются после публикации, изменения создают копию
+
+    public FriendsIndex() {
+        friends = new ConcurrentHashMap<>();
+    }
+
+    public void rebuild(Map<Long, long[]> adjacency) { // заменить граф целиком, массивы должны быть отсортированы
+        friends.keySet().retainAll(adjacency.keySet());
+        friends.putAll(adjacency);
+    }
+
+    public long[] get(long userId) { // друзья пользователя в порядке id
+        return friends.getOrDefault(userId, EMPTY);
+    }
+
+    public Map<Long, long[]> snapshot() { // копия графа; массивы общие, так как не изменяются
+        return new HashMap<>(friends);
+    }
+
+    public void add(long userId, long friendId) {
+        friends.compute(userId, (id, current) -> {
+            if (current == null) {
+                return new long[]{friendId};
+            }
+            int position = Arrays.binarySearch(current, friendId);
+            if (position >= 0) {
+                return current;
+            }
+            int insertAt = -position - 1;
+            long[] updated = new long[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = friendId;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            return updated;
+        });
+    }
+
+    public void remove(long userId, long friendId) {
+        friends.computeIfPresent(userId, (id, current) -> {
+            int position = Arrays.binarySearch(current, friendId);
+            if (position < 0) {
+                return current;
+            }
+            if (current.length == 1) {
+                return null;
+            }
+            long[] updated = new long[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, position);
+            System.arraycopy(current, position + 1, updated, position, current.length - position - 1);
+            return updated;
+        });
+    }
+
+    public void removeUser(long userId) { // удалить пользователя вместе со всеми ссылками на него
+        friends.remove(userId);
+        friends.keySet().forEach(id -> remove(id, userId));
+    }
+
+    // друзья друзей пользователя, которые еще не в его списке друзей, по убыванию числа общих друзей, затем по id
+    public long[] suggest(long userId, int count) {
+        long[] direct = get(userId);
+        long fanOut = 0;
+        for (long friendId : direct) {
+            fanOut += get(friendId).length;
+        }
+        boolean parallel = fanOut >= PARALLEL_FAN_OUT;
+        LongStream friendIds = parallel ? LongStream.of(direct).parallel() : LongStream.of(direct);
+        long[] candidates = friendIds
+                .flatMap(friendId -> LongStream.of(get(friendId)))
+                .filter(id -> id != userId && Arrays.binarySearch(direct, id) < 0)
+                .toArray();
+        if (parallel) {
+            Arrays.parallelSort(candidates);
+        } else {
+            Arrays.sort(candidates);
+        }
+        return top(candidates, count);
+    }
+
+    // выбор count идентификаторов с наибольшим числом повторов из отсортированного массива
+    private static long[] top(long[] sorted, int count) {
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                distinct++;
+            }
+        }
+        long[] ids = new long[Math.max(0, Math.min(count, distinct))]; // count приходит из запроса
+        int[] mutual = new int[ids.length];
+        int size = 0;
+        for (int start = 0, end; start < sorted.length && ids.length > 0; start = end) {
+            end = start + 1;
+            while (end < sorted.length && sorted[end] == sorted[start]) {
+                end++;
+            }
+            int runLength = end - start;
+            if (size == ids.length && runLength <= mutual[size - 1]) {
+                continue; // при равенстве остается меньший id, встреченный раньше
+            }
+            int position = size == ids.length ? size - 1 : size++;
+            while (position > 0 && mutual[position - 1] < runLength) {
+                ids[position] = ids[position - 1];
+                mutual[position] = mutual[position - 1];
+                position--;
+            }
+            ids[position] = sorted[start];
+            mutual[position] = runLength;
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    public static long[] intersect(long[] first, long[] second) { // пересечение отсортированных массивов за O(n + m)
+        long[] result = new long[Math.min(first.length, second.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+}
@@ -6,33 +6,71 @@ import ru.yandex.practicum.filmorate.exception.FilmAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikesMemoryStats;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.validator.FilmValidator;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class InMemoryFilmStorage implements FilmStorage { // хранение, обновление и поиск фильмов
-    private final Map<Long, Film> films; // таблица фильмов
-    private final Map<Long, Set<Long>> likes; // таблица отметок нравится фильма
+    private static final int UPDATE_LOCK_STRIPES = 64;
+    private final ConcurrentSkipListMap<Long, Film> films; // таблица фильмов, упорядоченная по id
+    private final Map<String, Long> filmIdsByName; // уникальный индекс по названию фильма
+    private final Map<Long, LikeSet> likes; // таблица отметок нравится фильма
+    private final PopularityIndex popularity; // рейтинг фильмов по числу отметок нравится
+    private final SearchIndex searchIndex; // полнотекстовый поиск по названию и описанию
+    private final TitleTrie titles; // подсказки по началу названия
+    private final AtomicLong lastId; // генератор идентификаторов фильмов
+    // изменения выполняются под общей блокировкой, снимок берет исключительную только на время копирования
+    private final ReadWriteLock epoch;
+    // обновления одного фильма выполняются по очереди под блокировкой его полосы (id по модулю числа полос)
+    private final Object[] updateLocks;
 
     public InMemoryFilmStorage() {
-        films = new HashMap<>();
-        likes = new HashMap<>();
+        films = new ConcurrentSkipListMap<>();
+        filmIdsByName = new ConcurrentHashMap<>();
+        likes = new ConcurrentHashMap<>();
+        popularity = new PopularityIndex();
+        searchIndex = new SearchIndex();
+        titles = new TitleTrie(popularity::getLikes);
+        lastId = new AtomicLong();
+        epoch = new ReentrantReadWriteLock();
+        updateLocks = new Object[UPDATE_LOCK_STRIPES];
+        Arrays.setAll(updateLocks, i -> new Object());
     }
 
     @Override
     public Film create(Film film) {
+        return change(() -> insert(film));
+    }
+
+    private Film insert(Film film) {
         if (FilmValidator.validate(film)) {
-            for (Film f : films.values()) {
-                if (f.getName().equals(film.getName())) {
-                    log.debug("Попытка создания фильма с уже используемым названием: {}.", film);
-                    throw new FilmAlreadyExistException("В Filmorate уже добавлен фильм с названием: " + film.getName());
-                }
+            long id = lastId.incrementAndGet();
+            if (filmIdsByName.putIfAbsent(film.getName(), id) != null) {
+                log.debug("Попытка создания фильма с уже используемым названием: {}.", film);
+                throw new FilmAlreadyExistException("В Filmorate уже добавлен фильм с названием: " + film.getName());
             }
-            films.put(film.getId(), film);
-            likes.put(film.getId(), new HashSet<>());
+            film.setId(id);
+            likes.put(id, new LikeSet());
+            films.put(id, film);
+            popularity.add(id);
+            searchIndex.index(id, film.getName(), film.getDescription());
+            titles.put(id, film.getName());
             log.info("Добавлен фильм: {}", film);
             return film;
         } else {
@@ -40,16 +78,46 @@ public class InMemoryFilmStorage implements FilmStorage { // хранение, 
         }
     }
 
+    @Override
+    public List<Film> createBatch(List<Film> films) {
+        films.forEach(this::create);
+        return films;
+    }
+
     @Override
     public Film put(Film film) {
+        return change(() -> update(film));
+    }
+
+    private Film update(Film film) {
         FilmValidator.validate(film);
-        if (films.containsKey(film.getId())) {
-            films.put(film.getId(), film);
-            log.info("Обновлены данные фильма: {}.", film);
-        } else {
-            log.debug("Попытка обновления фильма с несуществующим идентификатором: {}.", film);
+        if (film.getId() == null) {
             throw new FilmNotFoundException("В Filmorate отсутствует фильм с идентификатором № " + film.getId());
         }
+        long id = film.getId();
+        // не compute: функция пересчета ConcurrentSkipListMap может вызываться повторно, а изменения индексов
+        // должны выполняться ровно один раз
+        synchronized (updateLock(id)) {
+            Film current = films.get(id);
+            if (current == null) {
+                log.debug("Попытка обновления фильма с несуществующим идентификатором: {}.", film);
+                throw new FilmNotFoundException("В Filmorate отсутствует фильм с идентификатором № " + id);
+            }
+            boolean renamed = !current.getName().equals(film.getName());
+            if (renamed) {
+                Long owner = filmIdsByName.putIfAbsent(film.getName(), id);
+                if (owner != null && owner != id) {
+                    throw new FilmAlreadyExistException("В Filmorate уже добавлен фильм с названием: " + film.getName());
+                }
+            }
+            films.put(id, film);
+            if (renamed) {
+                filmIdsByName.remove(current.getName(), id);
+            }
+            searchIndex.index(id, film.getName(), film.getDescription());
+            titles.put(id, film.getName());
+        }
+        log.info("Обновлены данные фильма: {}.", film);
         return film;
     }
 
@@ -58,19 +126,235 @@ public class InMemoryFilmStorage implements FilmStorage { // хранение, 
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public Collection<Film> findAll(Projection fields) { // фильмы в памяти уже собраны, поля отбирает контроллер
+        return findAll();
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> action) {
+        films.values().forEach(action);
+    }
+
+    @Override
+    public Collection<Film> findPage(Long after, int limit) {
+        return films.tailMap(after == null ? 0 : after, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Film> findPage(Long after, int limit, Projection fields) {
+        return findPage(after, limit);
+    }
+
     @Override
     public Film getById(Long id) {
-        if (films.containsKey(id)) {
-            return films.get(id);
+        Film film = films.get(id);
+        if (film != null) {
+            return film;
         } else {
             throw new FilmNotFoundException("В Filmorate отсутствует фильм с идентификатором № " + id);
         }
     }
 
+    @Override
+    public Film getById(Long id, Projection fields) {
+        return getById(id);
+    }
+
     @Override
     public Collection<Film> getPopular(int count) {
-        return likes.entrySet().stream()
-                .sorted((o1, o2) -> Long.compare(o2.getValue().size(), o1.getValue().size()))
-                .map(t -> films.get(t.getKey())).limit(count).collect(Collectors.toList());
+        return popularity.top(count).stream().map(films::get).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count, Integer genreId, Integer year) { // полный проход по рейтингу
+        return popularity.top(popularity.size()).stream()
+                .map(films::get)
+                .filter(film -> film != null
+                        && (genreId == null || film.getGenres() != null
+                        && film.getGenres().stream().anyMatch(genre -> genre.getId() == genreId))
+                        && (year == null || film.getReleaseDate().getYear() == year))
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count, Integer genreId, Integer year, Projection fields) {
+        return getPopular(count, genreId, year);
+    }
+
+    @Override
+    public Collection<Film> search(String query, int count) {
+        return searchIndex.search(query, count, popularity::getLikes).stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<FilmSuggestion> suggest(String prefix, int limit) {
+        return titles.suggest(prefix, limit);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return change(() -> {
+            boolean added = getLikes(filmId).add(userId);
+            if (added) {
+                popularity.change(filmId, 1);
+                titles.likesChanged(filmId, true);
+            }
+            return added;
+        });
+    }
+
+    @Override
+    public boolean deleteLike(Long filmId, Long userId) {
+        return change(() -> {
+            boolean deleted = getLikes(filmId).remove(userId);
+            if (deleted) {
+                popularity.change(filmId, -1);
+                titles.likesChanged(filmId, false);
+            }
+            return deleted;
+        });
+    }
+
+    @Override
+    public void rebuildPopularity() {
+        Map<Long, Integer> counts = new HashMap<>();
+        likes.forEach((filmId, users) -> counts.put(filmId, users.size()));
+        popularity.rebuild(counts);
+        titles.refresh();
+    }
+
+    public LikesMemoryStats getLikesMemoryStats() { // объем памяти, занимаемый отметками нравится
+        long count = 0;
+        long bytes = 0;
+        int bitmapFilms = 0;
+        for (LikeSet filmLikes : likes.values()) {
+            count += filmLikes.size();
+            bytes += filmLikes.memoryBytes();
+            bitmapFilms += filmLikes.isBitmap() ? 1 : 0;
+        }
+        return new LikesMemoryStats(count, bytes, bitmapFilms);
+    }
+
+    // снимок фильмов и отметок нравится: копия ссылок на фильмы и массивов отметок снимается под исключительной
+    // блокировкой, запись в файл идет без нее; возвращает число фильмов
+    public int writeSnapshot(Path path) throws IOException {
+        List<Film> filmsCopy = new ArrayList<>(films.size());
+        List<long[]> likesCopy = new ArrayList<>(films.size());
+        long last;
+        epoch.writeLock().lock();
+        try {
+            for (Film film : films.values()) {
+                filmsCopy.add(film);
+                likesCopy.add(likes.get(film.getId()).toArray());
+            }
+            last = lastId.get();
+        } finally {
+            epoch.writeLock().unlock();
+        }
+        try (SnapshotFile.Writer out = new SnapshotFile.Writer(path)) {
+            out.writeLong(last);
+            out.writeVarInt(filmsCopy.size());
+            for (int i = 0; i < filmsCopy.size(); i++) {
+                writeFilm(out, filmsCopy.get(i));
+                out.writeSortedIds(likesCopy.get(i));
+            }
+            out.commit();
+        }
+        return filmsCopy.size();
+    }
+
+    public int loadSnapshot(Path path) throws IOException { // заменить содержимое хранилища снимком
+        epoch.writeLock().lock();
+        try (SnapshotFile.Reader in = new SnapshotFile.Reader(path)) {
+            films.clear();
+            filmIdsByName.clear();
+            likes.clear();
+            searchIndex.clear();
+            titles.clear();
+            lastId.set(in.readLong());
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++) {
+                Film film = readFilm(in);
+                films.put(film.getId(), film);
+                filmIdsByName.put(film.getName(), film.getId());
+                likes.put(film.getId(), LikeSet.of(in.readSortedIds()));
+                searchIndex.index(film.getId(), film.getName(), film.getDescription());
+                titles.put(film.getId(), film.getName());
+            }
+            rebuildPopularity();
+            return count;
+        } finally {
+            epoch.writeLock().unlock();
+        }
+    }
+
+    private static void writeFilm(SnapshotFile.Writer out, Film film) throws IOException {
+        out.writeVarLong(film.getId());
+        out.writeString(film.getName());
+        out.writeString(film.getDescription());
+        out.writeDate(film.getReleaseDate());
+        out.writeVarLong(film.getDuration() == null ? 0 : film.getDuration() + 1L);
+        out.writeVarLong(film.getMpa() == null ? 0 : film.getMpa().getId() + 1L);
+        if (film.getMpa() != null) {
+            out.writeString(film.getMpa().getName());
+        }
+        out.writeVarInt(film.getGenres() == null ? 0 : film.getGenres().size() + 1);
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                out.writeVarInt(genre.getId());
+                out.writeString(genre.getName());
+            }
+        }
+    }
+
+    private static Film readFilm(SnapshotFile.Reader in) throws IOException {
+        Film film = Film.builder()
+                .id(in.readVarLong())
+                .name(in.readString())
+                .description(in.readString())
+                .releaseDate(in.readDate())
+                .build();
+        long duration = in.readVarLong();
+        film.setDuration(duration == 0 ? null : (int) (duration - 1));
+        long mpaId = in.readVarLong();
+        if (mpaId != 0) {
+            film.setMpa(new Mpa((int) (mpaId - 1), in.readString()));
+        }
+        int genres = in.readVarInt() - 1;
+        if (genres >= 0) {
+            film.setGenres(new TreeSet<>());
+            for (int i = 0; i < genres; i++) {
+                film.getGenres().add(new Genre(in.readVarInt(), in.readString()));
+            }
+        }
+        return film;
+    }
+
+    private Object updateLock(long filmId) {
+        return updateLocks[Math.floorMod(filmId, UPDATE_LOCK_STRIPES)];
+    }
+
+    private <T> T change(Supplier<T> action) {
+        epoch.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            epoch.readLock().unlock();
+        }
+    }
+
+    private LikeSet getLikes(Long filmId) {
+        LikeSet filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            throw new FilmNotFoundException("В Filmorate отсутствует фильм с идентификатором № " + filmId);
+        }
+        return filmLikes;
     }
-}
\ No newline at end of file
+}
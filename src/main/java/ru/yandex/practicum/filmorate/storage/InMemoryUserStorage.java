@@ -8,32 +8,60 @@ import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.validator.UserValidator;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class InMemoryUserStorage implements UserStorage { // хранение, обновление и поиск пользователей
-    private final Map<Long, User> users; // таблица пользователей
+    private static final int UPDATE_LOCK_STRIPES = 64;
+    private final ConcurrentSkipListMap<Long, User> users; // таблица пользователей, упорядоченная по id
+    private final Map<String, Long> userIdsByEmail; // уникальный индекс по адресу электронной почты
+    private final Map<String, Long> userIdsByLogin; // уникальный индекс по логину
+    private final AtomicLong lastId; // генератор идентификаторов пользователей
+    // изменения выполняются под общей блокировкой, снимок берет исключительную только на время копирования
+    private final ReadWriteLock epoch;
+    // обновление и удаление одного пользователя выполняются по очереди под блокировкой его полосы
+    private final Object[] updateLocks;
 
     public InMemoryUserStorage() {
-        users = new HashMap<>();
+        users = new ConcurrentSkipListMap<>();
+        userIdsByEmail = new ConcurrentHashMap<>();
+        userIdsByLogin = new ConcurrentHashMap<>();
+        lastId = new AtomicLong();
+        epoch = new ReentrantReadWriteLock();
+        updateLocks = new Object[UPDATE_LOCK_STRIPES];
+        Arrays.setAll(updateLocks, i -> new Object());
     }
 
     @Override
     public User create(User user) {
+        return change(() -> insert(user));
+    }
+
+    private User insert(User user) {
         if (UserValidator.validate(user)) {
-            for (User u : users.values()) {
-                if (u.getEmail().equals(user.getEmail()) || u.getLogin().equals(user.getLogin())) {
-                    log.info("Попытка создания пользователя с уже используемым адресом электронной почты " +
-                            "или логином: {}.", user);
-                    throw new UserAlreadyExistException("Адрес электронной почты или логин уже используются.");
-                }
+            long id = lastId.incrementAndGet();
+            if (!reserve(user.getEmail(), user.getLogin(), id)) {
+                log.info("Попытка создания пользователя с уже используемым адресом электронной почты " +
+                        "или логином: {}.", user);
+                throw new UserAlreadyExistException("Адрес электронной почты или логин уже используются.");
             }
             if (user.getName().isEmpty()) {
                 user.setName(user.getLogin());
                 log.info("Имя пользователя не было заполнено, автоматически присвоено имя логина: {}.", user.getName());
             }
-            users.put(user.getId(), user);
+            user.setId(id);
+            users.put(id, user);
             log.info("Добавлен пользователь: {}", user);
             return user;
         } else {
@@ -43,28 +71,176 @@ public class InMemoryUserStorage implements UserStorage { // хранение, 
 
     @Override
     public User put(User user) {
+        return change(() -> update(user));
+    }
+
+    private User update(User user) {
         UserValidator.validate(user);
-        if (users.containsKey(user.getId())) {
-            users.put(user.getId(), user);
-            log.info("Обновлены данные пользователя: {}.", user);
-        } else {
-            log.debug("Попытка обновления данных пользователя с несуществующим идентификатором: {}", user.getId());
+        if (user.getId() == null) {
             throw new UserNotFoundException("Введен не корректный id пользователя. Ваш id № " + user.getId());
         }
+        long id = user.getId();
+        // не compute: функция пересчета ConcurrentSkipListMap может вызываться повторно, а резервирование адреса
+        // и логина должно выполняться ровно один раз
+        synchronized (updateLock(id)) {
+            User current = users.get(id);
+            if (current == null) {
+                log.debug("Попытка обновления данных пользователя с несуществующим идентификатором: {}", id);
+                throw new UserNotFoundException("Введен не корректный id пользователя. Ваш id № " + id);
+            }
+            String email = current.getEmail().equals(user.getEmail()) ? null : user.getEmail();
+            String login = current.getLogin().equals(user.getLogin()) ? null : user.getLogin();
+            if (!reserve(email, login, id)) {
+                throw new UserAlreadyExistException("Адрес электронной почты или логин уже используются.");
+            }
+            users.put(id, user);
+            if (email != null) {
+                userIdsByEmail.remove(current.getEmail(), id);
+            }
+            if (login != null) {
+                userIdsByLogin.remove(current.getLogin(), id);
+            }
+        }
+        log.info("Обновлены данные пользователя: {}.", user);
         return user;
     }
 
+    @Override
+    public void delete(User user) {
+        change(() -> {
+            synchronized (updateLock(user.getId())) {
+                User removed = users.remove(user.getId());
+                if (removed != null) { // адрес и логин освобождаются
+                    userIdsByEmail.remove(removed.getEmail(), removed.getId());
+                    userIdsByLogin.remove(removed.getLogin(), removed.getId());
+                    log.info("Удален пользователь: {}.", removed);
+                }
+                return removed;
+            }
+        });
+    }
+
     @Override
     public Collection<User> findAll() {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public Collection<User> findAll(Projection fields) { // пользователи в памяти уже собраны, поля отбирает контроллер
+        return findAll();
+    }
+
+    @Override
+    public void streamAll(Consumer<User> action) {
+        users.values().forEach(action);
+    }
+
+    @Override
+    public Collection<User> findPage(Long after, int limit) {
+        return users.tailMap(after == null ? 0 : after, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<User> findPage(Long after, int limit, Projection fields) {
+        return findPage(after, limit);
+    }
+
+    @Override
+    public Optional<User> getById(Long id, Projection fields) {
+        return getById(id);
+    }
+
     @Override
     public Optional<User> getById(Long id) {
-        if (users.containsKey(id)) {
-            return Optional.ofNullable(users.get(id));
+        User user = users.get(id);
+        if (user != null) {
+            return Optional.of(user);
         } else {
             throw new UserNotFoundException("Введен не корректный id пользователя. Ваш id № " + id);
         }
     }
+
+    // снимок пользователей: копия ссылок снимается под исключительной блокировкой, запись в файл идет без нее;
+    // возвращает число пользователей
+    public int writeSnapshot(Path path) throws IOException {
+        List<User> usersCopy;
+        long last;
+        epoch.writeLock().lock();
+        try {
+            usersCopy = new ArrayList<>(users.values());
+            last = lastId.get();
+        } finally {
+            epoch.writeLock().unlock();
+        }
+        try (SnapshotFile.Writer out = new SnapshotFile.Writer(path)) {
+            out.writeLong(last);
+            out.writeVarInt(usersCopy.size());
+            for (User user : usersCopy) {
+                out.writeVarLong(user.getId());
+                out.writeString(user.getEmail());
+                out.writeString(user.getLogin());
+                out.writeString(user.getName());
+                out.writeDate(user.getBirthday());
+            }
+            out.commit();
+        }
+        return usersCopy.size();
+    }
+
+    public int loadSnapshot(Path path) throws IOException { // заменить содержимое хранилища снимком
+        epoch.writeLock().lock();
+        try (SnapshotFile.Reader in = new SnapshotFile.Reader(path)) {
+            users.clear();
+            userIdsByEmail.clear();
+            userIdsByLogin.clear();
+            lastId.set(in.readLong());
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++) {
+                User user = new User(in.readVarLong(), in.readString(), in.readString(), in.readString(),
+                        in.readDate());
+                users.put(user.getId(), user);
+                userIdsByEmail.put(user.getEmail(), user.getId());
+                userIdsByLogin.put(user.getLogin(), user.getId());
+            }
+            return count;
+        } finally {
+            epoch.writeLock().unlock();
+        }
+    }
+
+    private Object updateLock(long userId) {
+        return updateLocks[Math.floorMod(userId, UPDATE_LOCK_STRIPES)];
+    }
+
+    private <T> T change(Supplier<T> action) {
+        epoch.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            epoch.readLock().unlock();
+        }
+    }
+
+    // занять email и логин за пользователем id; null означает, что значение не меняется.
+    // если одно из значений занято другим пользователем, уже занятое освобождается и возвращается false
+    private boolean reserve(String email, String login, long id) {
+        if (email != null) {
+            Long owner = userIdsByEmail.putIfAbsent(email, id);
+            if (owner != null && owner != id) {
+                return false;
+            }
+        }
+        if (login != null) {
+            Long owner = userIdsByLogin.putIfAbsent(login, id);
+            if (owner != null && owner != id) {
+                if (email != null) {
+                    userIdsByEmail.remove(email, id);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+// множество идентификаторов пользователей, отметивших фильм. Пока отметок мало или они разрежены,
+// хранится отсортированный массив long; когда битовая карта диапазона идентификаторов становится
+// компактнее массива, множество переходит на битовую карту (1 бит на идентификатор диапазона)
+public class LikeSet {
+    private static final int MIN_CAPACITY = 4;
+    private static final int DENSE_MIN_SIZE = 64; // меньшие множества всегда хранятся массивом
+    private static final long OBJECT_OVERHEAD = 16 + 8 + 8 + 4 + 16; // заголовок, поля и заголовок массива
+    private long[] values; // отсортированные идентификаторы (в режиме массива) или слова битовой карты
+    private long base; // идентификатор, соответствующий первому биту карты (кратен 64)
+    private int size; // число отметок
+    private boolean bitmap; // true - режим битовой карты
+
+    public LikeSet() {
+        values = new long[MIN_CAPACITY];
+    }
+
+    public static LikeSet of(long[] sortedIds) { // множество из отсортированных различных идентификаторов
+        LikeSet likes = new LikeSet();
+        likes.values = Arrays.copyOf(sortedIds, Math.max(MIN_CAPACITY, sortedIds.length));
+        likes.size = sortedIds.length;
+        if (likes.size >= DENSE_MIN_SIZE && wordsFor(sortedIds[0], sortedIds[likes.size - 1]) < likes.size) {
+            likes.toBitmap();
+        }
+        return likes;
+    }
+
+    public synchronized boolean add(long userId) { // false, если отметка уже была
+        if (bitmap) {
+            if (contains(userId)) {
+                return false;
+            }
+            if (!fitsBitmap(userId)) {
+                if (wordsFor(Math.min(base, userId), Math.max(base + values.length * 64L - 1, userId)) > size * 2L) {
+                    toArray(size + 1);
+                    return addToArray(userId);
+                }
+                growBitmap(userId);
+            }
+            long offset = userId - base;
+            values[(int) (offset >>> 6)] |= 1L << offset;
+            size++;
+            return true;
+        }
+        boolean added = addToArray(userId);
+        if (added && size >= DENSE_MIN_SIZE && wordsFor(values[0], values[size - 1]) < size) {
+            toBitmap();
+        }
+        return added;
+    }
+
+    public synchronized boolean remove(long userId) { // false, если отметки не было
+        if (bitmap) {
+            if (!contains(userId)) {
+                return false;
+            }
+            long offset = userId - base;
+            values[(int) (offset >>> 6)] &= ~(1L << offset);
+            size--;
+            if (values.length > size * 2L) { // карта стала разреженной
+                toArray(size);
+            }
+            return true;
+        }
+        int position = Arrays.binarySearch(values, 0, size, userId);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    public synchronized boolean contains(long userId) {
+        if (bitmap) {
+            if (!fitsBitmap(userId)) {
+                return false;
+            }
+            long offset = userId - base;
+            return (values[(int) (offset >>> 6)] & (1L << offset)) != 0;
+        }
+        return Arrays.binarySearch(values, 0, size, userId) >= 0;
+    }
+
+    public synchronized int size() { // число отметок за O(1)
+        return size;
+    }
+
+    public synchronized boolean isBitmap() {
+        return bitmap;
+    }
+
+    public synchronized long[] toArray() { // отсортированная копия идентификаторов
+        if (!bitmap) {
+            return Arrays.copyOf(values, size);
+        }
+        long[] result = new long[size];
+        int i = 0;
+        for (int word = 0; word < values.length; word++) {
+            long bits = values[word];
+            while (bits != 0) {
+                result[i++] = base + word * 64L + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    public synchronized long memoryBytes() { // приблизительный объем памяти, занимаемый множеством
+        return OBJECT_OVERHEAD + values.length * 8L;
+    }
+
+    private boolean addToArray(long userId) {
+        int position = Arrays.binarySearch(values, 0, size, userId);
+        if (position >= 0) {
+            return false;
+        }
+        int insertAt = -position - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = userId;
+        size++;
+        return true;
+    }
+
+    private boolean fitsBitmap(long userId) {
+        return userId >= base && userId - base < values.length * 64L;
+    }
+
+    private void toBitmap() {
+        long from = Math.floorDiv(values[0], 64) * 64;
+        long[] words = new long[wordsFor(values[0], values[size - 1])];
+        for (int i = 0; i < size; i++) {
+            long offset = values[i] - from;
+            words[(int) (offset >>> 6)] |= 1L << offset;
+        }
+        base = from;
+        values = words;
+        bitmap = true;
+    }
+
+    private void toArray(int capacity) {
+        long[] ids = toArray();
+        values = Arrays.copyOf(ids, Math.max(MIN_CAPACITY, capacity));
+        base = 0;
+        bitmap = false;
+    }
+
+    private void growBitmap(long userId) {
+        long from = Math.min(base, Math.floorDiv(userId, 64) * 64);
+        long to = Math.max(base + values.length * 64L - 1, userId);
+        long[] words = new long[wordsFor(from, to)];
+        System.arraycopy(values, 0, words, (int) ((base - from) >>> 6), values.length);
+        base = from;
+        values = words;
+    }
+
+    private static int wordsFor(long min, long max) { // число 64-битных слов карты для диапазона [min, max]
+        long words = Math.floorDiv(max, 64) - Math.floorDiv(min, 64) + 1;
+        return (int) Math.min(words, Integer.MAX_VALUE);
+    }
+}
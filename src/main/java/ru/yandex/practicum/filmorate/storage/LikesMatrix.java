@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// неизменяемая разреженная матрица пользователь x фильм из таблицы LIKES вместе с заранее вычисленными
+// ближайшими соседями каждого пользователя по косинусному сходству векторов отметок нравится
+public class LikesMatrix {
+    public static final LikesMatrix EMPTY = new Builder().build(0, 0);
+    private static final int MIN_ROWS_PER_TASK = 256; // пользователей в одной задаче fork/join
+
+    private final Map<Long, Integer> rowsByUser; // строка матрицы по id пользователя
+    private final long[] filmIds; // id фильма по номеру столбца
+    private final int[] rowOffsets; // отметки пользователя row: columns[rowOffsets[row]..rowOffsets[row + 1])
+    private final int[] columns; // номера столбцов, внутри строки по возрастанию
+    private final int[] neighbourOffsets; // соседи пользователя row: neighbours[neighbourOffsets[row]..]
+    private final int[] neighbours; // номера строк соседей по убыванию сходства
+    private final float[] similarities;
+    private final int rowsPerTask; // каждая задача выделяет рабочие массивы на всех пользователей, поэтому задач немного
+
+    private LikesMatrix(Map<Long, Integer> rowsByUser, long[] filmIds, int[] rowOffsets, int[] columns,
+                        int neighbourCount, int maxLikersPerFilm) {
+        this.rowsByUser = rowsByUser;
+        this.filmIds = filmIds;
+        this.rowOffsets = rowOffsets;
+        this.columns = columns;
+        int rows = rowOffsets.length - 1;
+        this.rowsPerTask = Math.max(MIN_ROWS_PER_TASK, rows / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        this.neighbourOffsets = new int[rows + 1];
+        for (int row = 0; row < rows; row++) {
+            neighbourOffsets[row + 1] = neighbourOffsets[row] + neighbourCount;
+        }
+        this.neighbours = new int[rows * neighbourCount];
+        this.similarities = new float[rows * neighbourCount];
+        Arrays.fill(neighbours, -1);
+        if (rows > 0 && neighbourCount > 0) {
+            ForkJoinPool.commonPool().invoke(new NeighbourTask(transpose(), maxLikersPerFilm, 0, rows));
+        }
+    }
+
+    public int users() {
+        return rowOffsets.length - 1;
+    }
+
+    public int likes() {
+        return columns.length;
+    }
+
+    // фильмы, которые нравятся соседям пользователя и еще не отмечены им самим, по убыванию суммы сходства
+    public long[] recommend(long userId, int count) {
+        Integer row = rowsByUser.get(userId);
+        if (row == null || count <= 0) {
+            return new long[0];
+        }
+        Map<Integer, Float> scores = new HashMap<>();
+        for (int i = neighbourOffsets[row]; i < neighbourOffsets[row + 1] && neighbours[i] >= 0; i++) {
+            int neighbour = neighbours[i];
+            for (int j = rowOffsets[neighbour]; j < rowOffsets[neighbour + 1]; j++) {
+                if (Arrays.binarySearch(columns, rowOffsets[row], rowOffsets[row + 1], columns[j]) < 0) {
+                    scores.merge(columns[j], similarities[i], Float::sum);
+                }
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Float>comparingByValue().reversed()
+                        .thenComparing(entry -> filmIds[entry.getKey()]))
+                .limit(count)
+                .mapToLong(entry -> filmIds[entry.getKey()])
+                .toArray();
+    }
+
+    private int[][] transpose() { // пользователи по столбцам: смещения и номера строк
+        int[] columnOffsets = new int[filmIds.length + 1];
+        for (int column : columns) {
+            columnOffsets[column + 1]++;
+        }
+        for (int column = 0; column < filmIds.length; column++) {
+            columnOffsets[column + 1] += columnOffsets[column];
+        }
+        int[] next = Arrays.copyOf(columnOffsets, filmIds.length);
+        int[] rows = new int[columns.length];
+        for (int row = 0; row < users(); row++) {
+            for (int i = rowOffsets[row]; i < rowOffsets[row + 1]; i++) {
+                rows[next[columns[i]]++] = row;
+            }
+        }
+        return new int[][]{columnOffsets, rows};
+    }
+
+    // ближайшие соседи для диапазона строк; общие отметки считаются по транспонированной матрице,
+    // фильмы, отмеченные более чем maxLikersPerFilm пользователями, пропускаются как почти не различающие вкусы
+    private class NeighbourTask extends RecursiveAction {
+        private final int[][] transposed;
+        private final int maxLikersPerFilm;
+        private final int from;
+        private final int to;
+
+        private NeighbourTask(int[][] transposed, int maxLikersPerFilm, int from, int to) {
+            this.transposed = transposed;
+            this.maxLikersPerFilm = maxLikersPerFilm;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > rowsPerTask) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new NeighbourTask(transposed, maxLikersPerFilm, from, middle),
+                        new NeighbourTask(transposed, maxLikersPerFilm, middle, to));
+                return;
+            }
+            int[] columnOffsets = transposed[0];
+            int[] userRows = transposed[1];
+            int[] common = new int[users()]; // число общих отметок с каждым пользователем
+            int[] touched = new int[users()];
+            for (int row = from; row < to; row++) {
+                int size = 0;
+                for (int i = rowOffsets[row]; i < rowOffsets[row + 1]; i++) {
+                    int column = columns[i];
+                    if (columnOffsets[column + 1] - columnOffsets[column] > maxLikersPerFilm) {
+                        continue;
+                    }
+                    for (int j = columnOffsets[column]; j < columnOffsets[column + 1]; j++) {
+                        int other = userRows[j];
+                        if (other != row && common[other]++ == 0) {
+                            touched[size++] = other;
+                        }
+                    }
+                }
+                int degree = rowOffsets[row + 1] - rowOffsets[row];
+                for (int k = 0; k < size; k++) {
+                    int other = touched[k];
+                    float similarity = (float) (common[other]
+                            / Math.sqrt((double) degree * (rowOffsets[other + 1] - rowOffsets[other])));
+                    offer(row, other, similarity);
+                    common[other] = 0;
+                }
+            }
+        }
+
+        private void offer(int row, int other, float similarity) { // вставка в список соседей, упорядоченный по сходству
+            int first = neighbourOffsets[row];
+            int position = neighbourOffsets[row + 1] - 1;
+            if (neighbours[position] >= 0 && !better(similarity, other, similarities[position], neighbours[position])) {
+                return;
+            }
+            while (position > first && (neighbours[position - 1] < 0
+                    || better(similarity, other, similarities[position - 1], neighbours[position - 1]))) {
+                neighbours[position] = neighbours[position - 1];
+                similarities[position] = similarities[position - 1];
+                position--;
+            }
+            neighbours[position] = other;
+            similarities[position] = similarity;
+        }
+
+        private boolean better(float similarity, int row, float otherSimilarity, int otherRow) {
+            return similarity > otherSimilarity || (similarity == otherSimilarity && row < otherRow);
+        }
+    }
+
+    // собирает матрицу из пар (пользователь, фильм), упорядоченных по пользователю
+    public static class Builder {
+        private final Map<Long, Integer> rowsByUser = new HashMap<>();
+        private final Map<Long, Integer> columnsByFilm = new HashMap<>();
+        private long[] filmIds = new long[16];
+        private int[] rowOffsets = new int[16];
+        private int[] columns = new int[16];
+        private int likes;
+        private long lastUserId;
+
+        public void add(long userId, long filmId) {
+            if (rowsByUser.isEmpty() || userId != lastUserId) {
+                if (rowsByUser.containsKey(userId)) {
+                    throw new IllegalArgumentException("Отметки должны быть упорядочены по пользователю: " + userId);
+                }
+                int row = rowsByUser.size();
+                rowsByUser.put(userId, row);
+                if (row + 1 >= rowOffsets.length) {
+                    rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+                }
+                rowOffsets[row] = likes;
+                lastUserId = userId;
+            }
+            Integer column = columnsByFilm.get(filmId);
+            if (column == null) {
+                column = columnsByFilm.size();
+                columnsByFilm.put(filmId, column);
+                if (column == filmIds.length) {
+                    filmIds = Arrays.copyOf(filmIds, column * 2);
+                }
+                filmIds[column] = filmId;
+            }
+            if (likes == columns.length) {
+                columns = Arrays.copyOf(columns, likes * 2);
+            }
+            columns[likes++] = column;
+        }
+
+        public LikesMatrix build(int neighbourCount, int maxLikersPerFilm) {
+            int rows = rowsByUser.size();
+            int[] offsets = Arrays.copyOf(rowOffsets, rows + 1);
+            offsets[rows] = likes;
+            int[] sortedColumns = Arrays.copyOf(columns, likes);
+            for (int row = 0; row < rows; row++) { // номера столбцов выдаются по мере появления фильмов
+                Arrays.sort(sortedColumns, offsets[row], offsets[row + 1]);
+            }
+            return new LikesMatrix(rowsByUser, Arrays.copyOf(filmIds, columnsByFilm.size()), offsets, sortedColumns,
+                    neighbourCount, maxLikersPerFilm);
+        }
+    }
+}
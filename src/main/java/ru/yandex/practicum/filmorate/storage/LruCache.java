@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.CacheStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class LruCache<K, V> { // ограниченный по размеру кэш с вытеснением давно не использованных записей
+    private final int maxSize;
+    private static final int VERSION_STRIPES = 64;
+    private final LinkedHashMap<K, V> entries;
+    // счетчики записей по ключу (полосами по хэшу): промах заполняет кэш, только если ключ не менялся после чтения
+    private final long[] writeVersions = new long[VERSION_STRIPES];
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LruCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) { // null, если записи нет в кэше
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        writeVersions[stripe(key)]++;
+        entries.put(key, value);
+    }
+
+    public synchronized void invalidate(K key) {
+        writeVersions[stripe(key)]++;
+        entries.remove(key);
+    }
+
+    public synchronized long writeVersion(K key) { // читается перед загрузкой значения из хранилища
+        return writeVersions[stripe(key)];
+    }
+
+    // значение, загруженное после промаха, кладется в кэш, только если с момента writeVersion ключ не записывался
+    // и не сбрасывался: иначе оно могло быть прочитано до параллельного изменения
+    public synchronized boolean fill(K key, V value, long version) {
+        if (writeVersions[stripe(key)] != version) {
+            return false;
+        }
+        entries.put(key, value);
+        return true;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), maxSize);
+    }
+
+    private static int stripe(Object key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+}
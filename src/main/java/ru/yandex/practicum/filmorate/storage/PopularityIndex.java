@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+public class PopularityIndex { // рейтинг фильмов по убыванию числа отметок нравится, при равенстве - по id
+    private static final Comparator<Rank> RANK_ORDER = Comparator.comparingInt((Rank r) -> r.likes).reversed()
+            .thenComparingLong(r -> r.filmId);
+    private volatile Ranking current; // перестроенный рейтинг подменяется целиком
+    // изменения применяются под общей блокировкой, подмена рейтинга берет исключительную
+    private final ReadWriteLock swap;
+    private Queue<Consumer<Ranking>> pending; // изменения с начала перестроения, null - перестроение не идет
+
+    public PopularityIndex() {
+        current = new Ranking();
+        swap = new ReentrantReadWriteLock();
+    }
+
+    public void add(long filmId) { // добавить фильм без отметок нравится
+        apply(ranking -> ranking.add(filmId));
+    }
+
+    public void add(long filmId, int count) { // добавить фильм с count отметками или заменить его счетчик
+        apply(ranking -> ranking.add(filmId, count));
+    }
+
+    public void remove(long filmId) {
+        apply(ranking -> ranking.remove(filmId));
+    }
+
+    public void change(long filmId, int delta) { // изменить число отметок нравится фильма на delta
+        apply(ranking -> ranking.change(filmId, delta));
+    }
+
+    public int getLikes(long filmId) {
+        return current.likes.getOrDefault(filmId, 0);
+    }
+
+    public List<Long> top(int count) { // первые count фильмов рейтинга, O(count)
+        Ranking ranking = current;
+        int size = Math.max(0, Math.min(count, ranking.likes.size())); // count приходит из запроса
+        List<Long> result = new ArrayList<>(size);
+        Set<Long> seen = new HashSet<>();
+        Iterator<Rank> iterator = ranking.ranks.iterator();
+        while (result.size() < size && iterator.hasNext()) {
+            long filmId = iterator.next().filmId;
+            if (seen.add(filmId)) {
+                result.add(filmId);
+            }
+        }
+        return result;
+    }
+
+    // вызывается до чтения счетчиков, по которым будет перестроен рейтинг: изменения, примененные после этого,
+    // повторяются на новом рейтинге в rebuild
+    public void startRebuild() {
+        swap.writeLock().lock();
+        try {
+            if (pending == null) {
+                pending = new ConcurrentLinkedQueue<>();
+            }
+        } finally {
+            swap.writeLock().unlock();
+        }
+    }
+
+    // новый рейтинг строится по готовым счетчикам без блокировки, затем к нему применяются изменения,
+    // записанные с startRebuild, и он подменяет текущий
+    public void rebuild(Map<Long, Integer> counts) {
+        Ranking rebuilt = new Ranking();
+        counts.forEach(rebuilt::add);
+        swap.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.forEach(operation -> operation.accept(rebuilt));
+                pending = null;
+            }
+            current = rebuilt;
+        } finally {
+            swap.writeLock().unlock();
+        }
+    }
+
+    public void cancelRebuild() { // перестроение не состоялось, текущий рейтинг остается
+        swap.writeLock().lock();
+        try {
+            pending = null;
+        } finally {
+            swap.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return current.likes.size();
+    }
+
+    public Map<Long, Integer> counts() { // копия счетчиков, например для контрольной точки журнала
+        return new HashMap<>(current.likes);
+    }
+
+    private void apply(Consumer<Ranking> operation) {
+        swap.readLock().lock();
+        try {
+            operation.accept(current);
+            if (pending != null) {
+                pending.add(operation);
+            }
+        } finally {
+            swap.readLock().unlock();
+        }
+    }
+
+    private static final class Ranking { // упорядоченный список позиций и счетчики фильмов
+        private final ConcurrentSkipListSet<Rank> ranks = new ConcurrentSkipListSet<>(RANK_ORDER);
+        private final Map<Long, Integer> likes = new ConcurrentHashMap<>(); // текущее число отметок нравится
+
+        private void add(long filmId) {
+            likes.computeIfAbsent(filmId, id -> {
+                ranks.add(new Rank(id, 0));
+                return 0;
+            });
+        }
+
+        private void add(long filmId, int count) {
+            likes.compute(filmId, (id, old) -> {
+                ranks.add(new Rank(id, count));
+                if (old != null && old != count) {
+                    ranks.remove(new Rank(id, old));
+                }
+                return count;
+            });
+        }
+
+        private void remove(long filmId) {
+            likes.computeIfPresent(filmId, (id, old) -> {
+                ranks.remove(new Rank(id, old));
+                return null;
+            });
+        }
+
+        private void change(long filmId, int delta) {
+            likes.compute(filmId, (id, old) -> {
+                int current = old == null ? 0 : old;
+                int updated = Math.max(0, current + delta);
+                // новая позиция добавляется до удаления старой: читатель может увидеть фильм дважды, но не потеряет его
+                ranks.add(new Rank(id, updated));
+                if (old != null && updated != current) {
+                    ranks.remove(new Rank(id, current));
+                }
+                return updated;
+            });
+        }
+    }
+
+    private static final class Rank { // позиция фильма в рейтинге
+        private final long filmId;
+        private final int likes;
+
+        private Rank(long filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+    }
+}
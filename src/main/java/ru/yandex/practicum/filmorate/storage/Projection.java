@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.*;
+
+// поля ответа, запрошенные параметром fields (?fields=id,name,mpa), в порядке запроса. Хранилища в БД читают
+// только столбцы запрошенных полей и не дозагружают жанры фильмов, если они не запрошены
+public final class Projection {
+    public static final Projection ALL = new Projection(null);
+    public static final List<String> FILM_FIELDS =
+            List.of("id", "name", "description", "releaseDate", "duration", "mpa", "genres");
+    public static final List<String> USER_FIELDS = List.of("id", "email", "login", "name", "birthday");
+
+    private final Set<String> fields; // null - все поля
+
+    private Projection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    public static Projection parse(String fields, List<String> known) { // fields не задан - все поля
+        if (fields == null) {
+            return ALL;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : fields.split(",")) {
+            String field = name.trim();
+            if (!known.contains(field)) {
+                throw new ValidationException("Неизвестное поле '" + field + "' в параметре fields, допустимые поля: "
+                        + String.join(", ", known) + ".");
+            }
+            names.add(field);
+        }
+        return new Projection(names);
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean has(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    public Set<String> getFields() { // запрошенные поля в порядке запроса
+        return fields == null ? Set.of() : Collections.unmodifiableSet(fields);
+    }
+
+    // список столбцов для SELECT: столбец идентификатора и столбцы запрошенных полей (поле -> столбцы через запятую),
+    // alias - префикс таблицы в запросе с соединением ("f.")
+    public String columns(String alias, String idColumn, Map<String, String> columnsByField) {
+        if (fields == null) {
+            return alias + "*";
+        }
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add(alias + idColumn);
+        for (String field : fields) {
+            String fieldColumns = columnsByField.get(field);
+            if (fieldColumns != null) {
+                for (String column : fieldColumns.split(", ")) {
+                    columns.add(alias + column);
+                }
+            }
+        }
+        return String.join(", ", columns);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.GenreNotFoundException;
+import ru.yandex.practicum.filmorate.exception.MpaNotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.Dao.GenreDaoStorage;
+import ru.yandex.practicum.filmorate.storage.Dao.MpaDaoStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Primary
+@Component
+public class ReferenceDataCache implements GenreStorage, MpaStorage { // справочники жанров и рейтингов в памяти
+    private final GenreDaoStorage genreDaoStorage;
+    private final MpaDaoStorage mpaDaoStorage;
+    private final CatalogVersions versions;
+    private volatile Snapshot snapshot; // текущая неизменяемая копия справочников
+
+    public ReferenceDataCache(GenreDaoStorage genreDaoStorage, MpaDaoStorage mpaDaoStorage,
+                              CatalogVersions versions) {
+        this.genreDaoStorage = genreDaoStorage;
+        this.mpaDaoStorage = mpaDaoStorage;
+        this.versions = versions;
+    }
+
+    @PostConstruct
+    public void refresh() { // перечитать справочники из базы данных
+        List<Genre> genres = sorted(genreDaoStorage.getAllGenres(), Comparator.comparingInt(Genre::getId));
+        List<Mpa> mpa = sorted(mpaDaoStorage.getAllMpa(), Comparator.comparingInt(Mpa::getId));
+        Genre[] genresById = new Genre[genres.isEmpty() ? 0 : genres.get(genres.size() - 1).getId() + 1];
+        genres.forEach(g -> genresById[g.getId()] = g);
+        Mpa[] mpaById = new Mpa[mpa.isEmpty() ? 0 : mpa.get(mpa.size() - 1).getId() + 1];
+        mpa.forEach(m -> mpaById[m.getId()] = m);
+        snapshot = new Snapshot(genres, genresById, mpa, mpaById);
+        versions.referenceChanged();
+        log.info("Загружены справочники: {} жанров, {} рейтингов MPA.", genres.size(), mpa.size());
+    }
+
+    @Override
+    public List<Genre> getAllGenres() {
+        return snapshot.genres;
+    }
+
+    @Override
+    public Genre getGenreById(int id) {
+        Genre[] genresById = snapshot.genresById;
+        if (id < 0 || id >= genresById.length || genresById[id] == null) {
+            throw new GenreNotFoundException("Жанр по идентификатору " + id + " не найден.");
+        }
+        return genresById[id];
+    }
+
+    @Override
+    public Mpa getMpaById(int id) {
+        Mpa[] mpaById = snapshot.mpaById;
+        if (id < 0 || id >= mpaById.length || mpaById[id] == null) {
+            throw new MpaNotFoundException("Mpa-рейтинг фильма по идентификатору " + id + " не найден.");
+        }
+        return mpaById[id];
+    }
+
+    @Override
+    public List<Mpa> getAllMpa() {
+        return snapshot.mpa;
+    }
+
+    private static <T> List<T> sorted(List<T> values, Comparator<T> order) {
+        return values.stream().sorted(order).collect(Collectors.toUnmodifiableList());
+    }
+
+    private static final class Snapshot {
+        private final List<Genre> genres;
+        private final Genre[] genresById;
+        private final List<Mpa> mpa;
+        private final Mpa[] mpaById;
+
+        private Snapshot(List<Genre> genres, Genre[] genresById, List<Mpa> mpa, Mpa[] mpaById) {
+            this.genres = genres;
+            this.genresById = genresById;
+            this.mpa = mpa;
+            this.mpaById = mpaById;
+        }
+    }
+}
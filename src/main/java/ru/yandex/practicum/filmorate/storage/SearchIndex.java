@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongToIntFunction;
+
+// инвертированный индекс по названию и описанию фильмов: термин -> вес термина в каждом фильме.
+// Термины - слова в нижнем регистре (ё = е) с отброшенными окончаниями русских и английских слов;
+// последнее слово запроса ищется и как префикс, чтобы поиск работал по мере набора
+public class SearchIndex {
+    private static final float NAME_WEIGHT = 3; // совпадение в названии весит как три в описании
+    private static final float LIKES_BOOST = 0.2f; // множитель 1 + LIKES_BOOST * ln(1 + отметок нравится)
+    private static final int MAX_PREFIX_TERMS = 64; // сколько терминов подставляется вместо префикса
+    private static final int MIN_STEM_LENGTH = 3;
+    private static final String[] RUSSIAN_ENDINGS = {"иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими",
+            "ией", "ия", "ие", "ий", "ый", "ой", "ая", "яя", "ое", "ее", "ые", "ов", "ев", "ей", "ам", "ям", "ах",
+            "ях", "ых", "их", "ом", "ем", "ую", "юю", "ть", "а", "я", "ы", "и", "о", "е", "у", "ю", "ь", "й"};
+
+    private final ConcurrentSkipListMap<String, Map<Long, Float>> postings; // упорядочены для поиска по префиксу
+    private final Map<Long, Set<String>> terms; // термины фильма для обновления и удаления
+    // изменения выполняются по очереди: иначе добавление в список фильмов термина может попасть в список,
+    // который одновременно удаляется из postings как опустевший; поиск читает индекс без блокировки
+    private final Object writes;
+
+    public SearchIndex() {
+        postings = new ConcurrentSkipListMap<>();
+        terms = new ConcurrentHashMap<>();
+        writes = new Object();
+    }
+
+    public void index(long filmId, String name, String description) { // добавить фильм или заменить его текст
+        Map<String, Float> weights = new HashMap<>();
+        tokenize(name).forEach(term -> weights.merge(stem(term), NAME_WEIGHT, Float::sum));
+        tokenize(description).forEach(term -> weights.merge(stem(term), 1f, Float::sum));
+        synchronized (writes) {
+            Set<String> previous = terms.put(filmId, weights.keySet());
+            if (previous != null) {
+                previous.stream().filter(term -> !weights.containsKey(term)).forEach(term -> unlink(term, filmId));
+            }
+            weights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(filmId, weight));
+        }
+    }
+
+    public void remove(long filmId) {
+        synchronized (writes) {
+            Set<String> previous = terms.remove(filmId);
+            if (previous != null) {
+                previous.forEach(term -> unlink(term, filmId));
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (writes) {
+            terms.clear();
+            postings.clear();
+        }
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    // фильмы, содержащие все слова запроса, по убыванию релевантности (BM25-подобный вес термина, умноженный
+    // на поправку за популярность); likes возвращает число отметок нравится фильма
+    public List<Long> search(String query, int count, LongToIntFunction likes) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || count <= 0) {
+            return List.of();
+        }
+        Map<Long, Float> scores = null;
+        for (int i = 0; i < words.size(); i++) {
+            Map<Long, Float> matches = match(words.get(i), i == words.size() - 1);
+            if (scores == null) {
+                scores = matches;
+            } else {
+                Map<Long, Float> previous = scores;
+                matches.keySet().retainAll(previous.keySet());
+                matches.replaceAll((filmId, score) -> score + previous.get(filmId));
+                scores = matches;
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+        // в куче наименее релевантный фильм сверху, при равенстве - с большим id
+        PriorityQueue<Map.Entry<Long, Float>> top = new PriorityQueue<>(Map.Entry.<Long, Float>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Float>comparingByKey().reversed()));
+        for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+            float boost = 1 + LIKES_BOOST * (float) Math.log1p(likes.applyAsInt(entry.getKey()));
+            top.add(Map.entry(entry.getKey(), entry.getValue() * boost));
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+        List<Long> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().getKey());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // вес фильмов по одному слову запроса; для последнего слова добавляются термины, начинающиеся с него
+    private Map<Long, Float> match(String word, boolean prefix) {
+        Map<Long, Float> scores = new HashMap<>();
+        String stem = stem(word);
+        addScores(stem, scores);
+        if (prefix) {
+            int expanded = 0;
+            for (String term : postings.subMap(word, true, word + Character.MAX_VALUE, false).keySet()) {
+                if (!term.equals(stem)) {
+                    addScores(term, scores);
+                }
+                if (++expanded == MAX_PREFIX_TERMS) {
+                    break;
+                }
+            }
+        }
+        return scores;
+    }
+
+    private void addScores(String term, Map<Long, Float> scores) {
+        Map<Long, Float> films = postings.get(term);
+        if (films == null) {
+            return;
+        }
+        int total = Math.max(terms.size(), films.size());
+        float idf = (float) Math.log(1 + (total - films.size() + 0.5) / (films.size() + 0.5));
+        films.forEach((filmId, weight) -> scores.merge(filmId, idf * weight / (weight + 1.2f) * 2.2f, Math::max));
+    }
+
+    private void unlink(String term, long filmId) {
+        Map<Long, Float> films = postings.get(term);
+        if (films != null) {
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    public static List<String> tokenize(String text) { // слова из букв и цифр длиной от двух символов
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c == 'ё' || c == 'Ё' ? 'е' : Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                if (word.length() > 1) {
+                    words.add(word.toString());
+                }
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    static String stem(String word) { // отбросить одно окончание, оставив основу не короче MIN_STEM_LENGTH
+        if (word.chars().anyMatch(c -> c >= 'а' && c <= 'я')) {
+            for (String ending : RUSSIAN_ENDINGS) {
+                if (word.endsWith(ending) && word.length() - ending.length() >= MIN_STEM_LENGTH) {
+                    return word.substring(0, word.length() - ending.length());
+                }
+            }
+            return word;
+        }
+        if (word.length() > MIN_STEM_LENGTH + 1 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.length() > MIN_STEM_LENGTH && word.endsWith("s") && !word.endsWith("ss")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+}
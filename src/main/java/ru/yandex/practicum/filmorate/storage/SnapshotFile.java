@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+// двоичный файл снимка хранилища: заголовок (сигнатура и версия), затем числа переменной длины (varint),
+// строки UTF-8 с длиной и отсортированные массивы идентификаторов в виде разностей соседних значений
+public final class SnapshotFile {
+    private static final long MAGIC = 0x464D534E41505348L;
+    private static final int VERSION = 1;
+    private static final int WINDOW_BYTES = 256 * 1024 * 1024; // файл отображается в память окнами
+
+    private SnapshotFile() {
+    }
+
+    // запись во временный файл рядом с целевым; файл заменяется только после успешной записи и sync
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path tmp;
+        private final FileOutputStream file;
+        private final BufferedOutputStream out;
+        private boolean committed;
+
+        public Writer(Path target) throws IOException {
+            this.target = target;
+            this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            this.file = new FileOutputStream(tmp.toFile());
+            this.out = new BufferedOutputStream(file, 1 << 16);
+            writeLong(MAGIC);
+            writeVarInt(VERSION);
+        }
+
+        public void writeLong(long value) throws IOException {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (value >>> shift));
+            }
+        }
+
+        public void writeVarLong(long value) throws IOException { // 7 бит на байт, старший бит - продолжение
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        public void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        public void writeString(String value) throws IOException { // null записывается длиной 0, строка - длиной + 1
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            out.write(bytes);
+        }
+
+        public void writeDate(LocalDate value) throws IOException {
+            writeVarLong(value == null ? 0 : zigZag(value.toEpochDay()) + 1);
+        }
+
+        public void writeSortedIds(long[] ids) throws IOException {
+            writeVarInt(ids.length);
+            long previous = 0;
+            for (long id : ids) {
+                writeVarLong(id - previous);
+                previous = id;
+            }
+        }
+
+        public void commit() throws IOException {
+            out.flush();
+            file.getFD().sync();
+            out.close();
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    // последовательное чтение снимка через отображение файла в память
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+            map(0);
+            if (readLong() != MAGIC || readVarInt() != VERSION) {
+                throw new IOException("Файл " + path + " не является снимком хранилища");
+            }
+        }
+
+        public long readLong() throws IOException {
+            ensure(Long.BYTES);
+            return window.getLong();
+        }
+
+        public long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                ensure(1);
+                byte b = window.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Некорректное число в снимке");
+        }
+
+        public int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        public String readString() throws IOException {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            ensure(length);
+            byte[] bytes = new byte[length];
+            window.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public LocalDate readDate() throws IOException {
+            long value = readVarLong();
+            return value == 0 ? null : LocalDate.ofEpochDay(unZigZag(value - 1));
+        }
+
+        public long[] readSortedIds() throws IOException {
+            long[] ids = new long[readVarInt()];
+            long previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                previous += readVarLong();
+                ids[i] = previous;
+            }
+            return ids;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void ensure(int bytes) throws IOException { // перенести окно, если в нем не хватает bytes байт
+            if (window.remaining() >= bytes) {
+                return;
+            }
+            long position = windowStart + window.position();
+            if (position + bytes > size) {
+                throw new IOException("Снимок обрывается на позиции " + position);
+            }
+            map(position);
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, size - position));
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// снимки хранилищ в памяти (filmorate.snapshot.*): загрузка при запуске, запись по расписанию в фоне и при остановке
+@Slf4j
+@Component
+public class StorageSnapshots {
+    private static final String FILMS = "films.snapshot";
+    private static final String USERS = "users.snapshot";
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final boolean enabled;
+    private final Path directory;
+
+    @Autowired
+    public StorageSnapshots(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage,
+                            @Value("${filmorate.snapshot.enabled:false}") boolean enabled,
+                            @Value("${filmorate.snapshot.directory:./db/snapshots}") String directory) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        int users = Files.exists(directory.resolve(USERS)) ? userStorage.loadSnapshot(directory.resolve(USERS)) : 0;
+        int films = Files.exists(directory.resolve(FILMS)) ? filmStorage.loadSnapshot(directory.resolve(FILMS)) : 0;
+        log.info("Загружены снимки хранилищ: {} пользователей, {} фильмов, {} отметок нравится за {} мс.",
+                users, films, filmStorage.getLikesMemoryStats().getLikes(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.snapshot.interval-ms:600000}",
+            fixedDelayString = "${filmorate.snapshot.interval-ms:600000}")
+    public void scheduledSave() {
+        if (enabled) {
+            try {
+                save();
+            } catch (IOException e) {
+                log.error("Не удалось записать снимки хранилищ.", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (enabled) {
+            save();
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        long start = System.nanoTime();
+        int users = userStorage.writeSnapshot(directory.resolve(USERS));
+        int films = filmStorage.writeSnapshot(directory.resolve(FILMS));
+        log.info("Записаны снимки хранилищ: {} пользователей, {} фильмов за {} мс.", users, films,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,341 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+
+import java.util.*;
+import java.util.function.LongToIntFunction;
+
+// сжатое префиксное дерево названий фильмов (ребро хранит строку, а не один символ). Каждый узел хранит
+// до MAX_SUGGESTIONS самых популярных фильмов своего поддерева, поэтому подсказка по префиксу - это спуск
+// по дереву за O(длина префикса). При изменении отметок нравится обновляются только узлы пути названия фильма;
+// узел, из списка которого фильм мог выпасть в пользу фильма вне списка, помечается и пересчитывается
+// из списков дочерних узлов при следующем обращении
+public class TitleTrie {
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final long[] NO_FILMS = new long[0];
+
+    private final LongToIntFunction likes; // число отметок нравится фильма
+    private final Map<Long, String> names; // исходные названия фильмов
+    private Node root;
+
+    public TitleTrie(LongToIntFunction likes) {
+        this.likes = likes;
+        this.names = new HashMap<>();
+        this.root = new Node("");
+    }
+
+    public synchronized void put(long filmId, String name) { // добавить фильм или сменить его название
+        String previous = names.put(filmId, name);
+        if (previous != null) {
+            if (previous.equals(name)) {
+                return;
+            }
+            remove(normalize(previous), filmId);
+        }
+        insert(normalize(name), filmId);
+    }
+
+    public synchronized void remove(long filmId) {
+        String previous = names.remove(filmId);
+        if (previous != null) {
+            remove(normalize(previous), filmId);
+        }
+    }
+
+    public synchronized void clear() {
+        names.clear();
+        root = new Node("");
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    public synchronized void likesChanged(long filmId, boolean increased) { // переставить фильм в узлах его пути
+        String name = names.get(filmId);
+        if (name == null) {
+            return;
+        }
+        for (Node node : path(normalize(name))) {
+            if (increased) {
+                promote(node, filmId);
+            } else {
+                demote(node, filmId);
+            }
+        }
+    }
+
+    public synchronized void refresh() { // пересчитать списки всех узлов, например после перестроения рейтинга
+        markDirty(root);
+        recompute(root);
+    }
+
+    // самые популярные фильмы, название которых начинается с prefix (без учета регистра)
+    public synchronized List<FilmSuggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int slot = node.find(key.charAt(i));
+            if (slot < 0) {
+                return List.of();
+            }
+            Node child = node.children[slot];
+            int common = commonLength(child.label, key, i);
+            if (common < child.label.length() && i + common < key.length()) {
+                return List.of();
+            }
+            i += common;
+            node = child;
+        }
+        if (node.dirty) {
+            recompute(node);
+        }
+        List<FilmSuggestion> result = new ArrayList<>(Math.max(0, Math.min(limit, node.topSize)));
+        for (int j = 0; j < node.topSize && j < limit; j++) {
+            result.add(new FilmSuggestion(node.top[j], names.get(node.top[j])));
+        }
+        return result;
+    }
+
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private void insert(String key, long filmId) {
+        Node node = root;
+        int i = 0;
+        while (true) {
+            node.size++;
+            promote(node, filmId);
+            if (i == key.length()) {
+                node.films = append(node.films, filmId);
+                return;
+            }
+            int slot = node.find(key.charAt(i));
+            if (slot < 0) {
+                Node leaf = new Node(key.substring(i));
+                leaf.size = 1;
+                leaf.films = new long[]{filmId};
+                leaf.top = new long[]{filmId};
+                leaf.topSize = 1;
+                node.addChild(-slot - 1, leaf);
+                return;
+            }
+            Node child = node.children[slot];
+            int common = commonLength(child.label, key, i);
+            if (common < child.label.length()) {
+                child = split(node, slot, common);
+            }
+            node = child;
+            i += common;
+        }
+    }
+
+    private void remove(String key, long filmId) {
+        List<Node> path = path(key);
+        if (path.isEmpty()) {
+            return;
+        }
+        Node terminal = path.get(path.size() - 1);
+        terminal.films = Arrays.stream(terminal.films).filter(id -> id != filmId).toArray();
+        for (Node node : path) {
+            node.size--;
+            drop(node, filmId);
+        }
+        for (int i = path.size() - 1; i > 0; i--) { // опустевшие узлы удаляются
+            if (path.get(i).size == 0) {
+                path.get(i - 1).removeChild(path.get(i));
+            }
+        }
+    }
+
+    private List<Node> path(String key) { // узлы от корня до узла, где заканчивается key, или пустой список
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int slot = node.find(key.charAt(i));
+            if (slot < 0 || !key.startsWith(node.children[slot].label, i)) {
+                return List.of();
+            }
+            node = node.children[slot];
+            i += node.label.length();
+            path.add(node);
+        }
+        return path;
+    }
+
+    private Node split(Node parent, int slot, int at) { // разделить ребро дочернего узла после at символов
+        Node child = parent.children[slot];
+        Node middle = new Node(child.label.substring(0, at));
+        child.label = child.label.substring(at);
+        middle.keys = new char[]{child.label.charAt(0)};
+        middle.children = new Node[]{child};
+        middle.size = child.size;
+        middle.top = Arrays.copyOf(child.top, child.top.length);
+        middle.topSize = child.topSize;
+        middle.dirty = child.dirty;
+        parent.children[slot] = middle;
+        return middle;
+    }
+
+    private void promote(Node node, long filmId) { // фильм стал популярнее или добавлен в поддерево
+        int position = node.indexOf(filmId);
+        if (position < 0) {
+            if (node.topSize < MAX_SUGGESTIONS) {
+                if (node.topSize == node.top.length) {
+                    node.top = Arrays.copyOf(node.top, Math.min(MAX_SUGGESTIONS, node.top.length * 2 + 1));
+                }
+                position = node.topSize++;
+            } else if (better(filmId, node.top[node.topSize - 1])) {
+                position = node.topSize - 1;
+            } else {
+                return;
+            }
+            node.top[position] = filmId;
+        }
+        while (position > 0 && better(node.top[position], node.top[position - 1])) {
+            swap(node.top, position, --position);
+        }
+    }
+
+    private void demote(Node node, long filmId) { // фильм потерял отметку нравится
+        int position = node.indexOf(filmId);
+        if (position < 0) {
+            return;
+        }
+        while (position < node.topSize - 1 && better(node.top[position + 1], node.top[position])) {
+            swap(node.top, position, ++position);
+        }
+        if (position == node.topSize - 1 && node.size > node.topSize) {
+            node.dirty = true; // фильм вне списка может оказаться популярнее
+        }
+    }
+
+    private void drop(Node node, long filmId) { // фильм удален из поддерева
+        int position = node.indexOf(filmId);
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(node.top, position + 1, node.top, position, node.topSize - position - 1);
+        node.topSize--;
+        if (node.size > node.topSize) {
+            node.dirty = true;
+        }
+    }
+
+    private void markDirty(Node node) {
+        node.dirty = true;
+        for (int i = 0; i < node.keys.length; i++) {
+            markDirty(node.children[i]);
+        }
+    }
+
+    private void recompute(Node node) { // лучшие фильмы узла из его фильмов и списков дочерних узлов
+        List<Long> candidates = new ArrayList<>();
+        for (long filmId : node.films) {
+            candidates.add(filmId);
+        }
+        for (int i = 0; i < node.keys.length; i++) {
+            Node child = node.children[i];
+            if (child.dirty) {
+                recompute(child);
+            }
+            for (int j = 0; j < child.topSize; j++) {
+                candidates.add(child.top[j]);
+            }
+        }
+        candidates.sort((a, b) -> better(a, b) ? -1 : better(b, a) ? 1 : 0);
+        node.topSize = Math.min(MAX_SUGGESTIONS, candidates.size());
+        node.top = new long[node.topSize];
+        for (int i = 0; i < node.topSize; i++) {
+            node.top[i] = candidates.get(i);
+        }
+        node.dirty = false;
+    }
+
+    private boolean better(long a, long b) { // больше отметок нравится, при равенстве - меньший id
+        int likesA = likes.applyAsInt(a);
+        int likesB = likes.applyAsInt(b);
+        return likesA > likesB || likesA == likesB && a < b;
+    }
+
+    private static int commonLength(String label, String key, int from) {
+        int length = 0;
+        while (length < label.length() && from + length < key.length()
+                && label.charAt(length) == key.charAt(from + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void swap(long[] values, int i, int j) {
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    private static long[] append(long[] values, long value) {
+        long[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static class Node {
+        private String label; // часть названия на ребре от родителя
+        private char[] keys = new char[0]; // первые символы дочерних ребер, по возрастанию
+        private Node[] children = new Node[0];
+        private long[] films = NO_FILMS; // фильмы, название которых заканчивается в этом узле
+        private long[] top = NO_FILMS; // лучшие фильмы поддерева по убыванию популярности
+        private int topSize;
+        private int size; // число фильмов в поддереве
+        private boolean dirty; // список top требует пересчета
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private int find(char c) {
+            return Arrays.binarySearch(keys, c);
+        }
+
+        private int indexOf(long filmId) {
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == filmId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void addChild(int slot, Node child) {
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, slot);
+            System.arraycopy(children, 0, newChildren, 0, slot);
+            newKeys[slot] = child.label.charAt(0);
+            newChildren[slot] = child;
+            System.arraycopy(keys, slot, newKeys, slot + 1, keys.length - slot);
+            System.arraycopy(children, slot, newChildren, slot + 1, children.length - slot);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        private void removeChild(Node child) {
+            int slot = find(child.label.charAt(0));
+            if (slot < 0 || children[slot] != child) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, slot);
+            System.arraycopy(children, 0, newChildren, 0, slot);
+            System.arraycopy(keys, slot + 1, newKeys, slot, keys.length - slot - 1);
+            System.arraycopy(children, slot + 1, newChildren, slot, children.length - slot - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+public final class Transactions {
+
+    private Transactions() {
+    }
+
+    // изменения в памяти применяются только после фиксации транзакции; вне транзакции - сразу
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // выполнить action под блокировкой lock и держать ее до завершения транзакции, то есть и на время действий
+    // afterCommit; вне транзакции блокировка снимается сразу после action
+    public static <T> T holdUntilCompletion(Lock lock, Supplier<T> action) {
+        lock.lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                return action.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) { // и после фиксации, и после отката
+                lock.unlock();
+            }
+        });
+        return action.get();
+    }
+}
@@ -4,6 +4,7 @@ import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
@@ -11,7 +12,19 @@ public interface UserStorage {
 
     User put(User user);
 
+    void delete(User user);
+
     Collection<User> findAll();
 
+    Collection<User> findAll(Projection fields); // все пользователи, у которых заполнены только поля fields
+
+    void streamAll(Consumer<User> action); // передать всех пользователей по одному, не собирая их в список
+
+    Collection<User> findPage(Long after, int limit); // страница пользователей с идентификатором больше after
+
+    Collection<User> findPage(Long after, int limit, Projection fields);
+
     Optional<User> getById(Long id);
+
+    Optional<User> getById(Long id, Projection fields);
 }
@@ -18,6 +18,10 @@ public class FilmValidator {
             log.warn("Передано пустое поле description.");
             return false;
         }
+        if (film.getReleaseDate() == null) {
+            log.warn("Передано пустое поле releaseDate.");
+            return false;
+        }
         if (film.getReleaseDate().isBefore(BIRTHDAY_CINEMA)) {
             log.warn("В поле realeseDate указана дата ранее Дня Рождения кинематогрофа.");
             return false;
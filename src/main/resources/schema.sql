@@ -14,12 +14,16 @@ CREATE TABLE IF NOT EXISTS FILMS (
     FILM_ID LONG NOT NULL AUTO_INCREMENT,
     NAME VARCHAR(200) NOT NULL UNIQUE,
     DESCRIPTION VARCHAR(200) NOT NULL,
-    RELEASE_DATE DATE NOT NULL UNIQUE,
+    RELEASE_DATE DATE NOT NULL,
     DURATION INT,
     MPA_ID INT REFERENCES MPA (MPA_ID),
+    LIKES_COUNT INT DEFAULT 0 NOT NULL,
     CONSTRAINT PK_FILMS PRIMARY KEY (FILM_ID)
 );
 
+CREATE INDEX IF NOT EXISTS IDX_FILMS_LIKES_COUNT ON FILMS (LIKES_COUNT DESC, FILM_ID);
+CREATE INDEX IF NOT EXISTS IDX_FILMS_RELEASE_DATE ON FILMS (RELEASE_DATE);
+
 CREATE TABLE IF NOT EXISTS FILM_GENRE (
     FILM_ID INT NOT NULL,
     GENRE_ID INT NOT NULL,
@@ -28,6 +32,8 @@ CREATE TABLE IF NOT EXISTS FILM_GENRE (
     CONSTRAINT FK_FILM_GENRE_GENRE_ID FOREIGN KEY(GENRE_ID) REFERENCES GENRE (GENRE_ID)
 );
 
+CREATE INDEX IF NOT EXISTS IDX_FILM_GENRE_GENRE_ID ON FILM_GENRE (GENRE_ID, FILM_ID);
+
 CREATE TABLE IF NOT EXISTS USERS (
     USER_ID LONG NOT NULL AUTO_INCREMENT,
     NAME VARCHAR(200) NOT NULL,
@@ -38,13 +44,19 @@ CREATE TABLE IF NOT EXISTS USERS (
 );
 
 CREATE TABLE IF NOT EXISTS LIKES (
-    FILM_ID LONG REFERENCES FILMS (FILM_ID) ON DELETE CASCADE NOT NULL,
-    USER_ID LONG REFERENCES USERS (USER_ID) ON DELETE CASCADE NOT NULL,
-    CONSTRAINT PK_LIKES PRIMARY KEY (FILM_ID, USER_ID)
+    FILM_ID LONG NOT NULL,
+    USER_ID LONG NOT NULL,
+    CONSTRAINT PK_LIKES PRIMARY KEY (FILM_ID, USER_ID),
+    CONSTRAINT FK_LIKES_FILM_ID FOREIGN KEY (FILM_ID) REFERENCES FILMS (FILM_ID) ON DELETE CASCADE,
+    CONSTRAINT FK_LIKES_USER_ID FOREIGN KEY (USER_ID) REFERENCES USERS (USER_ID) ON DELETE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS IDX_LIKES_USER_ID ON LIKES (USER_ID, FILM_ID);
+
 CREATE TABLE IF NOT EXISTS FRIENDSHIP (
     USER_ID LONG REFERENCES USERS (USER_ID) ON DELETE CASCADE NOT NULL,
     FRIEND_ID LONG REFERENCES USERS (USER_ID) ON DELETE CASCADE NOT NULL,
     CONSTRAINT PK_FRIENDSHIP PRIMARY KEY (USER_ID, FRIEND_ID)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS IDX_FRIENDSHIP_FRIEND_ID ON FRIENDSHIP (FRIEND_ID, USER_ID);
\ No newline at end of file
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.service.FilmDbService;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext
+class CachedStorageTests {
+    @Autowired
+    private FilmDbService filmDbService;
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testPutWithoutIdBypassesCache() throws Exception {
+        mockMvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Без id\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\"," +
+                                "\"duration\":90,\"mpa\":{\"id\":1}}"))
+                .andExpect(status().isOk());
+        assertTrue(filmDbService.findAllFilms().stream().anyMatch(film -> film.getName().equals("Без id")));
+
+        mockMvc.perform(put("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"noid@ya.ru\",\"login\":\"noid\",\"name\":\"n\"," +
+                                "\"birthday\":\"2000-01-01\"}"))
+                .andExpect(status().isNotFound());
+    }
+}
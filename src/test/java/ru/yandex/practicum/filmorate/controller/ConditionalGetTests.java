@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmDbService;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext
+class ConditionalGetTests {
+    @Autowired
+    private FilmDbService filmDbService;
+    @Autowired
+    private MockMvc mockMvc;
+
+    private String etag(String url) throws Exception {
+        String etag = mockMvc.perform(get(url)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag, url);
+        return etag;
+    }
+
+    @Test
+    public void testReferenceDataNotModified() throws Exception {
+        String genres = etag("/genres");
+        mockMvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, genres))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/genres")).andExpect(jsonPath("$[0].id").value(1));
+        String mpa = etag("/mpa");
+        mockMvc.perform(get("/mpa").header(HttpHeaders.IF_NONE_MATCH, mpa)).andExpect(status().isNotModified());
+
+        filmDbService.refreshReferenceData();
+        mockMvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, genres)).andExpect(status().isOk());
+    }
+
+    @Test
+    public void testFilmAndPopularTagsFollowWrites() throws Exception {
+        String film = etag("/films/2");
+        String popular = etag("/films/popular?count=5");
+        mockMvc.perform(get("/films/2").header(HttpHeaders.IF_NONE_MATCH, film)).andExpect(status().isNotModified());
+        mockMvc.perform(get("/films/popular?count=5").header(HttpHeaders.IF_NONE_MATCH, popular))
+                .andExpect(status().isNotModified());
+
+        filmDbService.addLike(2L, 1L);
+        mockMvc.perform(get("/films/2").header(HttpHeaders.IF_NONE_MATCH, film)).andExpect(status().isNotModified());
+        mockMvc.perform(get("/films/popular?count=5").header(HttpHeaders.IF_NONE_MATCH, popular))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(2));
+
+        Film updated = filmDbService.getFilmById(2L);
+        updated.setDescription("Новое описание");
+        filmDbService.put(updated);
+        mockMvc.perform(get("/films/2").header(HttpHeaders.IF_NONE_MATCH, film))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("Новое описание"));
+        assertNotEquals(film, etag("/films/2"));
+    }
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext
+class FilmBatchTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testCreateBatchFromJsonArray() throws Exception {
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" +
+                                "{\"name\":\"batch1\",\"description\":\"d1\",\"releaseDate\":\"1990-01-01\"," +
+                                "\"duration\":90,\"mpa\":{\"id\":1},\"genres\":[{\"id\":1},{\"id\":2}]}," +
+                                "{\"name\":\"\",\"description\":\"d2\",\"releaseDate\":\"1990-01-02\"," +
+                                "\"duration\":90,\"mpa\":{\"id\":1}}," +
+                                "{\"name\":\"batch3\",\"description\":\"d3\",\"releaseDate\":\"1990-01-03\"," +
+                                "\"duration\":90,\"mpa\":{\"id\":2}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].id", notNullValue()))
+                .andExpect(jsonPath("$[1].error", notNullValue()))
+                .andExpect(jsonPath("$[2].id", notNullValue()));
+    }
+
+    @Test
+    public void testCreateBatchFromNdjsonWithDuplicate() throws Exception {
+        mockMvc.perform(post("/films/batch")
+                        .contentType("application/x-ndjson")
+                        .content("{\"name\":\"nd1\",\"description\":\"d1\",\"releaseDate\":\"1991-01-01\"," +
+                                "\"duration\":90,\"mpa\":{\"id\":1}}\n" +
+                                "{\"name\":\"nd1\",\"description\":\"d2\",\"releaseDate\":\"1991-01-02\"," +
+                                "\"duration\":90,\"mpa\":{\"id\":1}}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", notNullValue()))
+                .andExpect(jsonPath("$[1].id", nullValue()))
+                .andExpect(jsonPath("$[1].error", notNullValue()));
+    }
+
+    @Test
+    public void testCreateBatchWithoutDurationAndWithUnknownMpa() throws Exception {
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" +
+                                "{\"name\":\"noDuration\",\"description\":\"d1\",\"releaseDate\":\"1992-01-01\"," +
+                                "\"mpa\":{\"id\":1}}," +
+                                "{\"name\":\"unknownMpa\",\"description\":\"d2\",\"releaseDate\":\"1992-01-02\"," +
+                                "\"duration\":90,\"mpa\":{\"id\":99}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", notNullValue()))
+                .andExpect(jsonPath("$[1].id", nullValue()))
+                .andExpect(jsonPath("$[1].error").value("Фильм ссылается на несуществующий рейтинг MPA или жанр."));
+    }
+}
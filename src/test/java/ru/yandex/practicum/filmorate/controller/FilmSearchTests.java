@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.FilmDbService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext
+class FilmSearchTests {
+    @Autowired
+    private FilmDbService filmDbService;
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Film film(String name, String description) {
+        return filmDbService.create(Film.builder()
+                .name(name)
+                .description(description)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1))
+                .build());
+    }
+
+    private List<Long> search(String query) {
+        return filmDbService.searchFilms(query, 10).stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSearchFollowsCreateUpdateAndLikes() throws Exception {
+        Film a = film("Брат", "Фильм о войне и мире");
+        Film b = film("Брат 2", "Продолжение фильма");
+        filmDbService.addLike(b.getId(), 1L);
+        assertEquals(List.of(b.getId(), a.getId()), search("брат"));
+        assertEquals(List.of(a.getId()), search("войны"));
+
+        b.setName("Сестры");
+        filmDbService.put(b);
+        assertEquals(List.of(a.getId()), search("брат"));
+        assertEquals(List.of(b.getId()), search("сестра"));
+
+        mockMvc.perform(get("/films/search?q=сест")).andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(b.getId()));
+        mockMvc.perform(get("/films/search?q= ,")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testSuggestFollowsCreateUpdateAndLikes() throws Exception {
+        Film a = film("Интерстеллар", "Космос");
+        Film b = film("Интерны", "Сериал");
+        filmDbService.addLike(b.getId(), 1L);
+        mockMvc.perform(get("/films/suggest?prefix=инте")).andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(b.getId()))
+                .andExpect(jsonPath("$[0].name").value("Интерны"))
+                .andExpect(jsonPath("$[1].id").value(a.getId()));
+
+        a.setName("Начало");
+        filmDbService.put(a);
+        assertEquals(List.of(b.getId()), filmDbService.suggestFilms("инте", 10).stream()
+                .map(FilmSuggestion::getId).collect(Collectors.toList()));
+        mockMvc.perform(get("/films/suggest?prefix=нач&limit=1")).andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(a.getId()));
+        mockMvc.perform(get("/films/suggest?prefix=инте&limit=50")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/suggest?prefix=инте&limit=-1")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/suggest?prefix=инте&limit=0")).andExpect(status().isBadRequest());
+    }
+}
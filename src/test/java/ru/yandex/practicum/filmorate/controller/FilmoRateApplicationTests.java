@@ -1,18 +1,28 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmDbService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.Dao.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -26,6 +36,11 @@ import static org.junit.jupiter.api.Assertions.*;
 class FilmoRateApplicationTests {
     private final UserDbStorage userDbStorage;
     private final FilmDbService filmDbService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final UserController userController;
     private static User user1 = User.builder()
             .id(15L)
             .email("email@ya.ru")
@@ -83,6 +98,15 @@ class FilmoRateApplicationTests {
         assertEquals(8, result.size());
     }
 
+    @Test
+    public void testFindUsersPage() {
+        List<User> firstPage = List.copyOf(userDbStorage.findPage(null, 2));
+        assertEquals(2, firstPage.size());
+        assertTrue(firstPage.get(0).getId() < firstPage.get(1).getId());
+        Collection<User> nextPage = userDbStorage.findPage(firstPage.get(1).getId(), 2);
+        nextPage.forEach(user -> assertTrue(user.getId() > firstPage.get(1).getId()));
+    }
+
     @Test
     public void testCreateUser() {
         User user2 = User.builder()
@@ -164,6 +188,12 @@ class FilmoRateApplicationTests {
         assertEquals(4, result.size());
     }
 
+    @Test
+    public void testFindAllFilmsWithMpa() {
+        Collection<Film> result = filmDbService.findAllFilms();
+        result.forEach(film -> assertNotNull(film.getMpa().getName()));
+    }
+
     @Test
     public void testCreateFilm() {
         Film filmNew = Film.builder()
@@ -217,7 +247,14 @@ class FilmoRateApplicationTests {
     public void testDeleteLike() {
         filmDbService.deleteLike(film1.getId(), user1.getId());
         List<Long> likesList = filmDbService.getAllLikesForFilm(film1.getId());
-        assertEquals(1, likesList.size());
+        assertEquals(0, likesList.size());
+    }
+
+    @Test
+    public void testAddLikeForUnknownFilmOrUser() {
+        assertThrows(FilmNotFoundException.class, () -> filmDbService.addLike(999L, 1L));
+        assertThrows(UserNotFoundException.class, () -> filmDbService.addLike(1L, 999L));
+        assertThrows(FilmNotFoundException.class, () -> filmDbService.deleteLike(999L, 1L));
     }
 
     @Test
@@ -231,6 +268,16 @@ class FilmoRateApplicationTests {
         filmDbService.addLike(film2.getId(), friend.getId());
         Collection<Film> films = filmDbService.findPopularFilms(10);
         assertEquals(4, films.size());
+        assertEquals(film2.getId(), films.iterator().next().getId());
+    }
+
+    @Test
+    public void testRepairLikesCount() {
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 5 WHERE film_id = 1");
+        filmDbService.repairLikesCount();
+        Integer mismatched = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films f WHERE likes_count <> " +
+                "(SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)", Integer.class);
+        assertEquals(0, mismatched);
     }
 
     @Test
@@ -247,4 +294,54 @@ class FilmoRateApplicationTests {
         assertEquals("Триллер", filmDbService.getGenreById(4).getName());
         assertEquals("Боевик", filmDbService.getGenreById(6).getName());
     }
+
+    @Test
+    public void testReferenceDataIsCached() {
+        assertSame(filmDbService.getGenreById(1), filmDbService.getGenreById(1));
+        assertSame(filmDbService.getMpaById(1), filmDbService.getMpaById(1));
+        filmDbService.refreshReferenceData();
+        assertEquals(6, filmDbService.getAllGenres().size());
+        assertEquals(5, filmDbService.getAllMpa().size());
+    }
+
+    @Test
+    public void testFriendSuggestionsForUnknownUser() {
+        assertThrows(UserNotFoundException.class, () -> userService.getFriendSuggestions(999L, 10));
+    }
+
+    @Test
+    public void testFriendSuggestionsCountRange() {
+        assertThrows(ValidationException.class, () -> userController.getFriendSuggestions(1L, 0));
+        assertThrows(ValidationException.class, () -> userController.getFriendSuggestions(1L, 101));
+        assertNotNull(userController.getFriendSuggestions(1L, 100));
+    }
+
+    @Test
+    public void testRecommendations() {
+        recommendationService.refresh();
+        assertNotNull(recommendationService.getRecommendations(1L, 10));
+        assertThrows(UserNotFoundException.class, () -> recommendationService.getRecommendations(999L, 10));
+        assertThrows(ValidationException.class, () -> userController.getRecommendations(1L, 0));
+        assertThrows(ValidationException.class, () -> userController.getRecommendations(1L, 101));
+        assertNotNull(userController.getRecommendations(1L, 100));
+    }
+
+    @Test
+    public void testQueryMetrics() {
+        userDbStorage.findAll();
+        Timer timer = meterRegistry.find("filmorate.jdbc.query").tag("query", "SQL_GET_ALL_USERS").timer();
+        assertNotNull(timer);
+        assertTrue(timer.count() > 0);
+        assertNotNull(meterRegistry.find("filmorate.jdbc.rows").tag("query", "SQL_GET_ALL_USERS").summary());
+
+        DistributionSummary streamed = meterRegistry.summary("filmorate.jdbc.rows", "query", "SQL_STREAM_USERS");
+        double streamedBefore = streamed.totalAmount();
+        List<User> users = new ArrayList<>();
+        userDbStorage.streamAll(users::add);
+        assertEquals(users.size(), streamed.totalAmount() - streamedBefore);
+        DistributionSummary byId = meterRegistry.summary("filmorate.jdbc.rows", "query", "SQL_GET_USER");
+        double byIdBefore = byId.totalAmount();
+        assertEquals(1L, userDbStorage.getById(1L).orElseThrow().getId()); // строки набора читаются после подсчета
+        assertEquals(1, byId.totalAmount() - byIdBefore);
+    }
 }
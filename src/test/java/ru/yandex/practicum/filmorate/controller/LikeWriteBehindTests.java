@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.service.FilmDbService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBehind;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "filmorate.likes.write-behind.enabled=true")
+@AutoConfigureTestDatabase
+@DirtiesContext
+class LikeWriteBehindTests {
+    @Autowired
+    private FilmDbService filmDbService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private LikeWriteBehind likeWriteBehind;
+
+    @Test
+    public void testLikesAreWrittenInBackground() throws InterruptedException {
+        filmDbService.addLike(1L, 1L);
+        filmDbService.addLike(1L, 2L);
+        filmDbService.deleteLike(1L, 2L);
+        filmDbService.addLike(1L, 3L);
+        filmDbService.addLike(1L, 3L);
+        awaitLikes(1L, List.of(1L, 3L));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = 1",
+                Integer.class));
+        assertEquals(1L, filmDbService.findPopularFilms(1).iterator().next().getId());
+    }
+
+    @Test
+    public void testUnknownFilmOrUserRejectedBeforeQueue() {
+        assertThrows(FilmNotFoundException.class, () -> filmDbService.addLike(999L, 1L));
+        assertThrows(UserNotFoundException.class, () -> filmDbService.deleteLike(2L, 999L));
+    }
+
+    @Test
+    @DirtiesContext
+    public void testStopWritesQueuedLikes() throws InterruptedException {
+        for (long userId = 1; userId <= 3; userId++) {
+            filmDbService.addLike(2L, userId);
+        }
+        filmDbService.deleteLike(2L, 2L);
+        likeWriteBehind.stop(); // очередь дописана к возврату из stop
+        assertEquals(List.of(1L, 3L), filmDbService.getAllLikesForFilm(2L));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = 2",
+                Integer.class));
+    }
+
+    private void awaitLikes(Long filmId, List<Long> expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!filmDbService.getAllLikesForFilm(filmId).equals(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, filmDbService.getAllLikesForFilm(filmId));
+    }
+}
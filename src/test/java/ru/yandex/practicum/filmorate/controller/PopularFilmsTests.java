@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmDbService;
+import ru.yandex.practicum.filmorate.storage.Dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.Dao.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext
+class PopularFilmsTests {
+    @Autowired
+    private FilmDbService filmDbService;
+    @Autowired
+    private FilmDbStorage filmDbStorage;
+    @Autowired
+    private UserDbStorage userDbStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Film film(String name, int year, int... genres) {
+        TreeSet<Genre> filmGenres = new TreeSet<>();
+        for (int genre : genres) {
+            filmGenres.add(new Genre(genre, null));
+        }
+        return filmDbService.create(Film.builder()
+                .name(name)
+                .description("description")
+                .releaseDate(LocalDate.of(year, 6, 1))
+                .duration(100)
+                .mpa(new Mpa(1))
+                .genres(filmGenres)
+                .build());
+    }
+
+    private List<Long> popular(Integer genreId, Integer year) {
+        return filmDbService.findPopularFilms(10, genreId, year).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPopularByGenreAndYear() throws Exception {
+        Film a = film("popularA", 2001, 1);
+        Film b = film("popularB", 2005, 1, 2);
+        Film c = film("popularC", 2001, 2);
+        for (long userId = 1; userId <= 3; userId++) {
+            filmDbService.addLike(b.getId(), userId);
+        }
+        filmDbService.addLike(a.getId(), 1L);
+        filmDbService.addLike(a.getId(), 2L);
+        filmDbService.addLike(c.getId(), 1L);
+
+        assertEquals(List.of(b.getId(), a.getId()), popular(1, null));
+        assertEquals(List.of(b.getId(), c.getId()), popular(2, null));
+        assertEquals(List.of(a.getId(), c.getId()), popular(null, 2001));
+        assertEquals(List.of(c.getId()), popular(2, 2001));
+        assertEquals(List.of(), popular(3, null));
+
+        a.setGenres(new TreeSet<>(List.of(new Genre(2, null))));
+        filmDbService.put(a);
+        assertEquals(List.of(b.getId()), popular(1, null));
+        assertEquals(List.of(b.getId(), a.getId(), c.getId()), popular(2, null));
+
+        mockMvc.perform(get("/films/popular?count=1&genreId=2&year=2001")).andExpect(status().isOk());
+        mockMvc.perform(get("/films/popular?genreId=99")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/films/popular?count=-1")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular?year=1000000000")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular?year=-5&genreId=2")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testConcurrentDuplicateLikeIsNoOp() {
+        Film film = film("concurrentLikes", 2010);
+        long added = IntStream.range(0, 16).parallel()
+                .filter(i -> filmDbStorage.addLike(film.getId(), 1L))
+                .count();
+        assertEquals(1, added);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?",
+                Integer.class, film.getId()));
+    }
+
+    @Test
+    public void testLikesDuringRebuildAreCountedOnce() throws InterruptedException {
+        Film film = film("rebuildLikes", 2011);
+        List<Long> users = IntStream.range(0, 40).mapToObj(i -> {
+            jdbcTemplate.update("INSERT INTO users (name, login, email, birthday) VALUES (?, ?, ?, '2000-01-01')",
+                    "r" + i, "rebuild" + i, "rebuild" + i + "@ya.ru");
+            return jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = ?", Long.class, "rebuild" + i);
+        }).collect(Collectors.toList());
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> writers = IntStream.range(0, 4).mapToObj(w -> new Thread(() -> {
+            for (int i = 0; running.get(); i++) { // каждый поток ставит и снимает отметки своих пользователей
+                long userId = users.get(w * 10 + i % 10);
+                if (i % 20 < 10) {
+                    filmDbService.addLike(film.getId(), userId);
+                } else {
+                    filmDbService.deleteLike(film.getId(), userId);
+                }
+            }
+        })).collect(Collectors.toList());
+        writers.forEach(Thread::start);
+        for (int i = 0; i < 30; i++) {
+            filmDbStorage.rebuildPopularity();
+        }
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        int stored = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class,
+                film.getId());
+        assertEquals(stored, filmDbStorage.getLikes(film.getId()));
+        assertEquals(stored, jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?",
+                Integer.class, film.getId()));
+    }
+
+    @Test
+    public void testDeletedUserLikesLeaveRankings() {
+        Film liked = film("deletedUserLikes", 2012, 5);
+        Film other = film("remainingLikes", 2012, 5);
+        jdbcTemplate.update("INSERT INTO users (name, login, email, birthday) " +
+                "VALUES ('d', 'deleted', 'deleted@ya.ru', '2000-01-01')");
+        long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE login = 'deleted'", Long.class);
+        filmDbService.addLike(liked.getId(), userId);
+        filmDbService.addLike(liked.getId(), 1L);
+        filmDbService.addLike(other.getId(), 2L);
+        filmDbService.addLike(other.getId(), 3L);
+
+        userDbStorage.delete(User.builder().id(userId).build());
+        assertEquals(1, filmDbStorage.getLikes(liked.getId()));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?",
+                Integer.class, liked.getId()));
+        assertEquals(List.of(other.getId(), liked.getId()), popular(5, null));
+        assertEquals(List.of(other.getId(), liked.getId()), popular(null, 2012));
+    }
+}
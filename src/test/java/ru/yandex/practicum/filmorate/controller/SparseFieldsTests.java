@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmDbService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.Dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.Projection;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext
+class SparseFieldsTests {
+    @Autowired
+    private FilmDbService filmDbService;
+    @Autowired
+    private FilmDbStorage filmDbStorage;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testFilmFieldsArePushedDownAndKeepRequestOrder() throws Exception {
+        Film film = filmDbService.create(Film.builder()
+                .name("Сталкер")
+                .description("Зона")
+                .releaseDate(LocalDate.of(1979, 5, 25))
+                .duration(163)
+                .mpa(new Mpa(1))
+                .genres(new TreeSet<>(List.of(new Genre(2, "Драма"))))
+                .build());
+
+        Film projected = filmDbStorage.getById(film.getId(), Projection.parse("name", Projection.FILM_FIELDS));
+        assertEquals("Сталкер", projected.getName());
+        assertNull(projected.getDescription());
+        assertNull(projected.getMpa());
+        assertNull(projected.getGenres());
+
+        mockMvc.perform(get("/films/" + film.getId() + "?fields=genres,name,releaseDate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.keys()", contains("genres", "name", "releaseDate")))
+                .andExpect(jsonPath("$.genres[0].name").value("Драма"))
+                .andExpect(jsonPath("$.releaseDate").value("1979-05-25"));
+        mockMvc.perform(get("/films?fields=id,mpa"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].keys()", contains("id", "mpa")));
+        mockMvc.perform(get("/films/popular?count=1&year=1979&fields=id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].keys()", contains("id")))
+                .andExpect(jsonPath("$[0].id").value(film.getId()));
+        mockMvc.perform(get("/films?fields=id,rating"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testUserFieldsOnPageAndById() throws Exception {
+        User user = userService.getUserById(1L).orElseThrow();
+        mockMvc.perform(get("/users?limit=2&fields=login"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CursorPage.NEXT_CURSOR_HEADER, "2"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].keys()", contains("login")));
+        mockMvc.perform(get("/users/1?fields=name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.keys()", contains("name")))
+                .andExpect(jsonPath("$.name").value(user.getName()));
+    }
+
+    @Test
+    public void testNullDurationAndMpaInFullAndProjectedRows() {
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date) VALUES ('nulls', 'd', '2000-01-01')");
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, mpa_id) " +
+                "VALUES ('nullDuration', 'd', '2000-01-01', 3)");
+        Long noMpa = jdbcTemplate.queryForObject("SELECT film_id FROM films WHERE name = 'nulls'", Long.class);
+        Long withMpa = jdbcTemplate.queryForObject("SELECT film_id FROM films WHERE name = 'nullDuration'", Long.class);
+
+        assertNull(filmDbStorage.getById(noMpa).getMpa());
+        assertNull(filmDbStorage.getById(noMpa).getDuration());
+        assertEquals(3, filmDbStorage.getById(withMpa).getMpa().getId());
+        Film projected = filmDbStorage.getById(withMpa, Projection.parse("duration,mpa", Projection.FILM_FIELDS));
+        assertNull(projected.getDuration());
+        assertEquals(3, projected.getMpa().getId());
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmDbService;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext
+class StreamingTests {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private FilmDbService filmDbService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private <T> List<T> ndjson(String url, Class<T> type) throws Exception {
+        MvcResult started = mockMvc.perform(get(url).accept(StreamingResponses.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(StreamingResponses.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        List<T> items = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isEmpty()) {
+                items.add(objectMapper.readValue(line, type));
+            }
+        }
+        assertTrue(body.isEmpty() || body.endsWith("\n"));
+        return items;
+    }
+
+    @Test
+    public void testUsersAndFriendsStream() throws Exception {
+        assertEquals(List.of(1L, 2L, 3L), ndjson("/users", User.class).stream()
+                .map(User::getId).collect(Collectors.toList()));
+        assertEquals(List.of(3L), ndjson("/users/1/friends", User.class).stream()
+                .map(User::getId).collect(Collectors.toList()));
+        assertEquals(List.of(), ndjson("/users/3/friends", User.class));
+
+        mockMvc.perform(get("/users").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(3));
+        mockMvc.perform(get("/users/1/friends"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].id").value(3));
+        MvcResult paged = mockMvc.perform(get("/users?limit=2").accept(StreamingResponses.APPLICATION_NDJSON))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(paged))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").exists());
+        assertTrue(meterRegistry.get("filmorate.stream.first-byte").tag("endpoint", "users").timer().count() > 0);
+    }
+
+    @Test
+    public void testFilmsStreamHydratesGenresAcrossBatches() throws Exception {
+        List<Film> films = IntStream.rangeClosed(1, 1200)
+                .mapToObj(i -> Film.builder()
+                        .name("stream" + i)
+                        .description("description")
+                        .releaseDate(LocalDate.of(2000, 1, 1))
+                        .duration(90)
+                        .mpa(new Mpa(1))
+                        .genres(i % 2 == 0 ? new TreeSet<>(List.of(new Genre(2, null))) : null)
+                        .build())
+                .collect(Collectors.toList());
+        filmDbService.createBatch(films.iterator());
+
+        List<Film> streamed = ndjson("/films", Film.class);
+        assertEquals(filmDbService.findAllFilms().size(), streamed.size());
+        for (int i = 1; i < streamed.size(); i++) {
+            assertTrue(streamed.get(i - 1).getId() < streamed.get(i).getId());
+        }
+        Film last = streamed.get(streamed.size() - 1);
+        assertEquals("stream1200", last.getName());
+        assertEquals("Драма", last.getGenres().first().getName());
+
+        // курсор и дозагрузка жанров работают в одной транзакции только для чтения, то есть на одном соединении
+        List<Boolean> readOnly = new ArrayList<>();
+        filmDbService.streamAllFilms(film ->
+                readOnly.add(TransactionSynchronizationManager.isCurrentTransactionReadOnly()));
+        assertTrue(readOnly.stream().allMatch(Boolean::booleanValue));
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedFilmStorageTest {
+
+    private static Film film(Long id, String description) {
+        return Film.builder()
+                .id(id)
+                .name("film")
+                .description(description)
+                .releaseDate(LocalDate.parse("2000-01-01"))
+                .duration(90)
+                .mpa(new Mpa(1, "G"))
+                .build();
+    }
+
+    @Test
+    public void testTagSeenWithStaleFilmIsReplacedAfterPut() {
+        CatalogVersions versions = new CatalogVersions();
+        AtomicReference<CachedFilmStorage> cached = new AtomicReference<>();
+        AtomicReference<String> staleTag = new AtomicReference<>();
+        InMemoryFilmStorage storage = new InMemoryFilmStorage() {
+            @Override
+            public Film put(Film film) {
+                cached.get().getById(film.getId()); // промах читателя до записи кладет в кэш старый фильм
+                Film updated = super.put(film);
+                versions.filmChanged(film.getId()); // как FilmDbStorage после фиксации
+                staleTag.set(versions.filmTag(film.getId()));
+                assertEquals("old", cached.get().getById(film.getId()).getDescription()); // кэш еще не сброшен
+                return updated;
+            }
+        };
+        cached.set(new CachedFilmStorage(storage, 100, versions));
+        long id = storage.create(film(null, "old")).getId();
+
+        cached.get().put(film(id, "new"));
+
+        assertEquals("new", cached.get().getById(id).getDescription());
+        assertNotEquals(staleTag.get(), versions.filmTag(id)); // метка, выданная со старым фильмом, устарела
+    }
+}
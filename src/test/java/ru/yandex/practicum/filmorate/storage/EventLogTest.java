@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+    private static final int SEGMENT_BYTES = 4 * EventLog.RECORD_SIZE; // по четыре записи в сегменте
+
+    @TempDir
+    Path directory;
+
+    private static List<long[]> replay(EventLog eventLog, long[] checkpoint) throws IOException {
+        List<long[]> records = new ArrayList<>();
+        assertTrue(eventLog.recover(in -> checkpoint[0] = in.readLong(),
+                (type, first, second) -> records.add(new long[]{type, first, second})));
+        return records;
+    }
+
+    @Test
+    public void testRecoverReplaysRecordsAcrossSegments() throws IOException {
+        EventLog eventLog = new EventLog(directory, SEGMENT_BYTES);
+        assertFalse(eventLog.recover(in -> fail(), (type, first, second) -> fail()));
+        List<Long> applied = new ArrayList<>();
+        for (long i = 1; i <= 10; i++) {
+            long id = i;
+            eventLog.append(1, id, id * 10, () -> applied.add(id));
+        }
+        eventLog.close();
+        assertEquals(10, applied.size());
+        assertEquals(3, segments());
+
+        EventLog reopened = new EventLog(directory, SEGMENT_BYTES);
+        List<long[]> records = replay(reopened, new long[1]);
+        assertEquals(10, records.size());
+        assertArrayEquals(new long[]{1, 10, 100}, records.get(9));
+        assertEquals(10, reopened.sequence());
+        reopened.append(2, 11, 0, () -> { });
+        reopened.close();
+        assertEquals(11, replay(new EventLog(directory, SEGMENT_BYTES), new long[1]).size());
+    }
+
+    @Test
+    public void testCheckpointSkipsCoveredRecordsAndSegments() throws IOException {
+        EventLog eventLog = new EventLog(directory, SEGMENT_BYTES);
+        eventLog.reset();
+        for (long i = 1; i <= 9; i++) {
+            eventLog.append(1, i, 0, () -> { });
+        }
+        eventLog.checkpoint(() -> out -> out.writeLong(42));
+        assertEquals(1, segments()); // сегменты с записями до контрольной точки удалены
+        eventLog.append(3, 10, 0, () -> { });
+        eventLog.close();
+
+        long[] checkpoint = new long[1];
+        List<long[]> records = replay(new EventLog(directory, SEGMENT_BYTES), checkpoint);
+        assertEquals(42, checkpoint[0]);
+        assertEquals(1, records.size());
+        assertArrayEquals(new long[]{3, 10, 0}, records.get(0));
+    }
+
+    @Test
+    public void testMissingSegmentIsReported() throws IOException {
+        EventLog eventLog = new EventLog(directory, SEGMENT_BYTES);
+        eventLog.reset();
+        for (long i = 1; i <= 9; i++) {
+            eventLog.append(1, i, 0, () -> { });
+        }
+        eventLog.close();
+        Files.delete(directory.resolve(String.format("segment-%019d.log", 4)));
+        assertFalse(new EventLog(directory, SEGMENT_BYTES).recover(in -> { }, (type, first, second) -> { }));
+    }
+
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendsIndexTest {
+
+    @Test
+    public void testIntersect() {
+        assertArrayEquals(new long[]{3, 7}, FriendsIndex.intersect(new long[]{1, 3, 5, 7}, new long[]{2, 3, 7, 9}));
+        assertArrayEquals(new long[0], FriendsIndex.intersect(new long[]{1, 2}, new long[]{3, 4}));
+        assertArrayEquals(new long[0], FriendsIndex.intersect(new long[0], new long[]{3, 4}));
+    }
+
+    @Test
+    public void testAddAndRemoveKeepOrder() {
+        FriendsIndex index = new FriendsIndex();
+        index.rebuild(Map.of(1L, new long[]{2, 8}));
+        index.add(1L, 5L);
+        index.add(1L, 5L);
+        index.add(1L, 1L);
+        index.add(3L, 4L);
+        assertArrayEquals(new long[]{1, 2, 5, 8}, index.get(1L));
+        assertArrayEquals(new long[]{4}, index.get(3L));
+        index.remove(1L, 2L);
+        index.remove(1L, 42L);
+        index.remove(3L, 4L);
+        assertArrayEquals(new long[]{1, 5, 8}, index.get(1L));
+        assertArrayEquals(new long[0], index.get(3L));
+    }
+
+    @Test
+    public void testRemoveUser() {
+        FriendsIndex index = new FriendsIndex();
+        index.rebuild(Map.of(1L, new long[]{2, 3}, 2L, new long[]{1}, 3L, new long[]{2}));
+        index.removeUser(2L);
+        assertArrayEquals(new long[]{3}, index.get(1L));
+        assertArrayEquals(new long[0], index.get(2L));
+        assertArrayEquals(new long[0], index.get(3L));
+    }
+
+    @Test
+    public void testSuggestRanksByMutualFriends() {
+        FriendsIndex index = new FriendsIndex();
+        index.rebuild(Map.of(
+                1L, new long[]{2, 3, 4},
+                2L, new long[]{1, 3, 5, 6},
+                3L, new long[]{6, 7},
+                4L, new long[]{5, 6, 8}));
+        assertArrayEquals(new long[]{6, 5, 7, 8}, index.suggest(1L, 10));
+        assertArrayEquals(new long[]{6, 5}, index.suggest(1L, 2));
+        assertArrayEquals(new long[0], index.suggest(9L, 10));
+        assertArrayEquals(new long[]{6, 5, 7, 8}, index.suggest(1L, 2_000_000_000));
+    }
+
+    @Test
+    public void testSuggestForHighDegreeUser() { // у друзей 200 тыс. связей, обход выполняется параллельно
+        Map<Long, long[]> adjacency = new HashMap<>();
+        long[] direct = LongStream.rangeClosed(2, 1001).toArray();
+        adjacency.put(1L, direct);
+        for (long friendId : direct) {
+            adjacency.put(friendId, LongStream.range(2000, 2150 + friendId % 100).toArray());
+        }
+        FriendsIndex index = new FriendsIndex();
+        index.rebuild(adjacency);
+        assertArrayEquals(new long[]{2000, 2001, 2002}, index.suggest(1L, 3));
+        assertArrayEquals(new long[]{2000}, index.suggest(1L, 1));
+    }
+}
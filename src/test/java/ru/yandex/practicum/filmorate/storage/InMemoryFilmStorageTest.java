@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.exception.FilmAlreadyExistException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryFilmStorageTest {
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("description")
+                .releaseDate(LocalDate.parse("1895-12-28"))
+                .duration(90)
+                .mpa(new Mpa(1, "G"))
+                .build();
+    }
+
+    @Test
+    public void testSnapshotRoundTrip(@TempDir Path directory) throws IOException {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        Film first = film("first");
+        first.setGenres(new TreeSet<>(List.of(new Genre(1, "Комедия"), new Genre(2, null))));
+        storage.create(first);
+        storage.create(film("second"));
+        for (long userId = 1; userId <= 1000; userId++) { // плотные отметки хранятся битовой картой
+            storage.addLike(2L, userId);
+        }
+        storage.addLike(1L, 5L);
+        assertEquals(2, storage.writeSnapshot(directory.resolve("films.snapshot")));
+
+        InMemoryFilmStorage restored = new InMemoryFilmStorage();
+        assertEquals(2, restored.loadSnapshot(directory.resolve("films.snapshot")));
+        assertEquals(storage.findAll(), restored.findAll());
+        assertEquals(List.of(2L, 1L), restored.getPopular(2).stream().map(Film::getId).collect(Collectors.toList()));
+        assertEquals(1001, restored.getLikesMemoryStats().getLikes());
+        assertEquals(1, restored.getLikesMemoryStats().getBitmapFilms());
+        assertFalse(restored.addLike(2L, 1000L));
+        assertEquals(3L, restored.create(film("third")).getId());
+        assertThrows(FilmAlreadyExistException.class, () -> restored.create(film("second")));
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.exception.UserAlreadyExistException;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryUserStorageTest {
+
+    private static User user(String email, String login) {
+        return User.builder()
+                .email(email)
+                .login(login)
+                .name("name")
+                .birthday(LocalDate.parse("2000-01-01"))
+                .build();
+    }
+
+    @Test
+    public void testUniqueEmailAndLogin() {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        storage.create(user("a@ya.ru", "a"));
+        assertThrows(UserAlreadyExistException.class, () -> storage.create(user("a@ya.ru", "b")));
+        assertThrows(UserAlreadyExistException.class, () -> storage.create(user("b@ya.ru", "a")));
+        // неудачная попытка не должна оставлять за собой занятый email
+        assertNotNull(storage.create(user("b@ya.ru", "b")).getId());
+    }
+
+    @Test
+    public void testUpdateReleasesOldKeys() {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        User created = storage.create(user("a@ya.ru", "a"));
+        storage.put(User.builder().id(created.getId()).email("c@ya.ru").login("c").name("name")
+                .birthday(created.getBirthday()).build());
+        assertNotNull(storage.create(user("a@ya.ru", "a")).getId());
+        assertThrows(UserAlreadyExistException.class, () -> storage.create(user("c@ya.ru", "d")));
+    }
+
+    @Test
+    public void testConcurrentCreateAssignsUniqueIds() {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        List<Long> ids = IntStream.range(0, 1000).parallel()
+                .mapToObj(i -> storage.create(user("u" + i + "@ya.ru", "u" + i)).getId())
+                .collect(Collectors.toList());
+        assertEquals(1000, ids.stream().distinct().count());
+        assertEquals(10, storage.findPage(990L, 100).size());
+    }
+
+    @Test
+    public void testConcurrentUpdatesLeaveOnlyFinalKeysReserved() {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        long id = storage.create(user("a@ya.ru", "a")).getId();
+        IntStream.range(0, 200).parallel().forEach(i -> storage.put(User.builder().id(id)
+                .email("u" + i + "@ya.ru").login("u" + i).name("name").birthday(LocalDate.parse("2000-01-01"))
+                .build()));
+        User last = storage.getById(id).orElseThrow();
+        for (int i = 0; i < 200; i++) { // адреса и логины промежуточных версий освобождены
+            if (!last.getLogin().equals("u" + i)) {
+                assertNotNull(storage.create(user("u" + i + "@ya.ru", "u" + i)).getId());
+            }
+        }
+        assertThrows(UserAlreadyExistException.class, () -> storage.create(user(last.getEmail(), "other")));
+
+        storage.delete(last);
+        assertNotNull(storage.create(user(last.getEmail(), last.getLogin())).getId());
+    }
+
+    @Test
+    public void testSnapshotRoundTrip(@TempDir Path directory) throws IOException {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        storage.create(user("a@ya.ru", "a"));
+        storage.create(user("б@ya.ru", "логин"));
+        assertEquals(2, storage.writeSnapshot(directory.resolve("users.snapshot")));
+
+        InMemoryUserStorage restored = new InMemoryUserStorage();
+        assertEquals(2, restored.loadSnapshot(directory.resolve("users.snapshot")));
+        assertEquals(storage.findAll(), restored.findAll());
+        assertEquals(3L, restored.create(user("c@ya.ru", "c")).getId());
+        assertThrows(UserAlreadyExistException.class, () -> restored.create(user("б@ya.ru", "b")));
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikeSetTest {
+
+    @Test
+    public void testSparseSetStaysArray() {
+        LikeSet likes = new LikeSet();
+        for (long id = 1; id <= 1000; id++) {
+            assertTrue(likes.add(id * 1_000_000));
+        }
+        assertFalse(likes.add(5_000_000));
+        assertFalse(likes.isBitmap());
+        assertEquals(1000, likes.size());
+        assertTrue(likes.contains(7_000_000));
+        assertFalse(likes.contains(7_000_001));
+    }
+
+    @Test
+    public void testDenseSetSwitchesToBitmapAndBack() {
+        LikeSet likes = new LikeSet();
+        for (long id = 1000; id < 11_000; id++) {
+            likes.add(id);
+        }
+        assertTrue(likes.isBitmap());
+        assertEquals(10_000, likes.size());
+        assertTrue(likes.memoryBytes() < 10_000); // около 1 бита на отметку против 8 байт в массиве
+        for (long id = 1000; id < 10_990; id++) {
+            likes.remove(id);
+        }
+        assertFalse(likes.isBitmap());
+        assertEquals(10, likes.size());
+        assertTrue(likes.contains(10_995));
+    }
+
+    @Test
+    public void testMatchesTreeSet() {
+        Random random = new Random(42);
+        LikeSet likes = new LikeSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            long id = 1 + random.nextInt(i < 100_000 ? 5_000 : 1_000_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), likes.remove(id));
+            } else {
+                assertEquals(expected.add(id), likes.add(id));
+            }
+            assertEquals(expected.size(), likes.size());
+        }
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), likes.toArray());
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikesMatrixTest {
+
+    private static LikesMatrix.Builder likes(long[][] likesByUser) {
+        LikesMatrix.Builder builder = new LikesMatrix.Builder();
+        for (long[] userLikes : likesByUser) {
+            for (int i = 1; i < userLikes.length; i++) {
+                builder.add(userLikes[0], userLikes[i]);
+            }
+        }
+        return builder;
+    }
+
+    @Test
+    public void testRecommendFromMostSimilarUsers() {
+        LikesMatrix matrix = likes(new long[][]{{1, 1, 2, 3}, {2, 1, 2, 4}, {3, 5}, {4, 3, 2, 1, 6}}).build(20, 100);
+        assertEquals(4, matrix.users());
+        assertEquals(11, matrix.likes());
+        assertArrayEquals(new long[]{6, 4}, matrix.recommend(1L, 10));
+        assertArrayEquals(new long[]{6}, matrix.recommend(1L, 1));
+        assertArrayEquals(new long[0], matrix.recommend(3L, 10));
+        assertArrayEquals(new long[0], matrix.recommend(42L, 10));
+    }
+
+    @Test
+    public void testWidelyLikedFilmsDoNotMakeNeighbours() {
+        LikesMatrix matrix = likes(new long[][]{{1, 1, 2, 3}, {2, 1, 2, 4}, {3, 5}, {4, 3, 2, 1, 6}}).build(20, 2);
+        assertArrayEquals(new long[]{6}, matrix.recommend(1L, 10));
+    }
+
+    @Test
+    public void testLikesMustBeGroupedByUser() {
+        LikesMatrix.Builder builder = likes(new long[][]{{1, 1}, {2, 1}});
+        assertThrows(IllegalArgumentException.class, () -> builder.add(1L, 2L));
+    }
+
+    @Test
+    public void testNeighboursComputedInParallel() { // несколько задач fork/join
+        LikesMatrix.Builder builder = new LikesMatrix.Builder();
+        for (long user = 0; user < 5000; user++) {
+            builder.add(user, user % 100);
+            builder.add(user, 10_000 + user);
+        }
+        LikesMatrix matrix = builder.build(20, 1000);
+        long[] recommended = matrix.recommend(0L, 100);
+        assertEquals(20, recommended.length);
+        assertEquals(10_100, recommended[0]);
+        assertEquals(12_000, recommended[19]);
+        assertArrayEquals(new long[]{10_050}, matrix.recommend(4950L, 1));
+    }
+}
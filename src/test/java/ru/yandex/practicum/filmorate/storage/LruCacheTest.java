@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.CacheStats;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LruCache<Long, String> cache = new LruCache<>(2);
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.get(1L);
+        cache.put(3L, "three");
+        assertEquals("one", cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals("three", cache.get(3L));
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    public void testStats() {
+        LruCache<Long, String> cache = new LruCache<>(10);
+        cache.put(1L, "one");
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(2L);
+        cache.invalidate(1L);
+        cache.get(1L);
+        CacheStats stats = cache.getStats();
+        assertEquals(2, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(0, stats.getSize());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    @Test
+    public void testFillIsRejectedAfterConcurrentWrite() {
+        LruCache<Long, String> cache = new LruCache<>(10);
+        long version = cache.writeVersion(1L);
+        cache.invalidate(1L); // изменение между чтением из хранилища и заполнением кэша
+        assertFalse(cache.fill(1L, "stale", version));
+        assertNull(cache.get(1L));
+
+        version = cache.writeVersion(1L);
+        cache.put(1L, "fresh");
+        assertFalse(cache.fill(1L, "stale", version));
+        assertEquals("fresh", cache.get(1L));
+
+        version = cache.writeVersion(1L);
+        assertTrue(cache.fill(1L, "loaded", version));
+        assertEquals("loaded", cache.get(1L));
+    }
+}
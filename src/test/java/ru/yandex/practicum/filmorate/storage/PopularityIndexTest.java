@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularityIndexTest {
+
+    @Test
+    public void testTopOrderedByLikesThenId() {
+        PopularityIndex index = new PopularityIndex();
+        index.add(1L);
+        index.add(2L);
+        index.add(3L);
+        index.change(3L, 1);
+        index.change(2L, 1);
+        index.change(2L, 1);
+        assertEquals(List.of(2L, 3L, 1L), index.top(10));
+        assertEquals(List.of(2L), index.top(1));
+        assertEquals(List.of(2L, 3L, 1L), index.top(Integer.MAX_VALUE));
+        assertEquals(List.of(), index.top(-1));
+    }
+
+    @Test
+    public void testChangeNeverGoesBelowZero() {
+        PopularityIndex index = new PopularityIndex();
+        index.add(1L);
+        index.change(1L, -1);
+        assertEquals(0, index.getLikes(1L));
+        assertEquals(List.of(1L), index.top(10));
+    }
+
+    @Test
+    public void testRebuild() {
+        PopularityIndex index = new PopularityIndex();
+        index.add(5L);
+        index.rebuild(Map.of(1L, 3, 2L, 7));
+        assertEquals(List.of(2L, 1L), index.top(10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testChangesDuringRebuildAreReplayed() {
+        PopularityIndex index = new PopularityIndex();
+        index.add(1L);
+        index.change(1L, 1);
+        index.startRebuild();
+        Map<Long, Integer> counts = Map.of(1L, 1); // счетчики прочитаны до следующих изменений
+        index.change(1L, 1);
+        index.add(2L);
+        index.change(2L, 3);
+        assertEquals(2, index.getLikes(1L));
+        index.rebuild(counts);
+        assertEquals(2, index.getLikes(1L));
+        assertEquals(List.of(2L, 1L), index.top(10));
+
+        index.startRebuild();
+        index.change(1L, 1);
+        index.cancelRebuild();
+        index.rebuild(Map.of(1L, 3, 2L, 3)); // после отмены изменения не повторяются
+        assertEquals(3, index.getLikes(1L));
+    }
+
+    @Test
+    public void testConcurrentChanges() {
+        PopularityIndex index = new PopularityIndex();
+        index.add(1L);
+        index.add(2L);
+        IntStream.range(0, 10_000).parallel().forEach(i -> index.change(i % 2 == 0 ? 1L : 2L, 1));
+        assertEquals(5_000, index.getLikes(1L));
+        assertEquals(5_000, index.getLikes(2L));
+        assertEquals(List.of(1L, 2L), index.top(10));
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+
+    @Test
+    public void testTokenizeAndStem() {
+        assertEquals(List.of("ежик", "тумане", "the", "fog"), SearchIndex.tokenize("Ёжик в Тумане: the fog 2"));
+        assertEquals(SearchIndex.stem("тумане"), SearchIndex.stem("туман"));
+        assertEquals(SearchIndex.stem("звездные"), SearchIndex.stem("звездный"));
+        assertEquals("movy", SearchIndex.stem("movies"));
+        assertEquals("war", SearchIndex.stem("wars"));
+        assertEquals("boss", SearchIndex.stem("boss"));
+    }
+
+    @Test
+    public void testSearchMatchesAllWordsAndRanksNameHigher() {
+        SearchIndex index = new SearchIndex();
+        index.index(1L, "Звездные войны", "Космическая опера");
+        index.index(2L, "Туманность", "Фильм о звездных войнах будущего");
+        index.index(3L, "Войны", "Историческая драма");
+        assertEquals(List.of(1L, 2L), index.search("звездная война", 10, id -> 0));
+        assertEquals(List.of(1L), index.search("звездная война", 1, id -> 0));
+        assertEquals(List.of(), index.search("звездная комедия", 10, id -> 0));
+    }
+
+    @Test
+    public void testLastWordMatchesPrefix() {
+        SearchIndex index = new SearchIndex();
+        index.index(1L, "Terminator", "Cyborg from the future");
+        index.index(2L, "Terminal", "Airport story");
+        assertEquals(List.of(1L, 2L), index.search("termin", 10, id -> 0));
+        assertEquals(List.of(1L), index.search("cyborg fut", 10, id -> 0));
+        assertEquals(List.of(), index.search("fut cyborg", 10, id -> 0));
+    }
+
+    @Test
+    public void testLikesBoostAndUpdates() {
+        SearchIndex index = new SearchIndex();
+        index.index(1L, "Matrix", "Hackers");
+        index.index(2L, "Matrix", "Hackers");
+        Map<Long, Integer> likes = Map.of(2L, 10);
+        assertEquals(List.of(2L, 1L), index.search("matrix", 10, id -> likes.getOrDefault(id, 0)));
+
+        index.index(2L, "Inception", "Dreams");
+        assertEquals(List.of(1L), index.search("matrix", 10, id -> 0));
+        assertEquals(List.of(2L), index.search("dream", 10, id -> 0));
+        index.remove(1L);
+        assertEquals(List.of(), index.search("matrix", 10, id -> 0));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testConcurrentRenamesKeepEveryPosting() throws InterruptedException {
+        SearchIndex index = new SearchIndex();
+        AtomicInteger lost = new AtomicInteger();
+        // пары фильмов одновременно переименовываются туда и обратно, так что список фильмов общего термина
+        // постоянно пустеет и заполняется снова; после каждого переименования фильм должен находиться по новому
+        // названию, его самого в это время никто не меняет
+        List<Thread> writers = LongStream.rangeClosed(1, 16).mapToObj(id -> new Thread(() -> {
+            String word = "Редкий" + "абвгдежзи".charAt((int) id / 2);
+            for (int i = 0; i < 20_000; i++) {
+                String name = i % 2 == 0 ? "Иной" : word;
+                index.index(id, name, null);
+                if (!index.search(name, 16, filmId -> 0).contains(id)) {
+                    lost.incrementAndGet();
+                }
+            }
+        })).collect(Collectors.toList());
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(0, lost.get());
+        assertEquals(16, index.search("редкий", 100, id -> 0).size());
+        assertEquals(List.of(), index.search("иной", 100, id -> 0));
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FilmSuggestion;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TitleTrieTest {
+
+    private static List<Long> ids(List<FilmSuggestion> suggestions) {
+        return suggestions.stream().map(FilmSuggestion::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSuggestByPrefixOrderedByLikes() {
+        Map<Long, Integer> likes = new HashMap<>();
+        TitleTrie trie = new TitleTrie(id -> likes.getOrDefault(id, 0));
+        trie.put(1L, "Терминатор");
+        trie.put(2L, "Терминал");
+        trie.put(3L, "Титаник");
+        trie.put(4L, "Тёмный рыцарь");
+        assertEquals(List.of(1L, 2L), ids(trie.suggest("терм", 10)));
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(trie.suggest("Т", 10)));
+        assertEquals(List.of(4L), ids(trie.suggest("темн", 10)));
+        assertEquals(List.of(), ids(trie.suggest("терминатор 2", 10)));
+        assertEquals(List.of(), ids(trie.suggest("т", -1)));
+        assertEquals("Терминал", trie.suggest("терминал", 10).get(0).getName());
+
+        likes.put(2L, 5);
+        trie.likesChanged(2L, true);
+        likes.put(3L, 1);
+        trie.likesChanged(3L, true);
+        assertEquals(List.of(2L, 3L), ids(trie.suggest("т", 2)));
+        assertEquals(List.of(2L, 1L), ids(trie.suggest("термин", 10)));
+    }
+
+    @Test
+    public void testRenameAndRemove() {
+        TitleTrie trie = new TitleTrie(id -> 0);
+        trie.put(1L, "Alien");
+        trie.put(2L, "Aliens");
+        trie.put(2L, "Avatar");
+        assertEquals(List.of(1L), ids(trie.suggest("ali", 10)));
+        assertEquals(List.of(2L), ids(trie.suggest("av", 10)));
+        trie.remove(1L);
+        assertEquals(List.of(), ids(trie.suggest("ali", 10)));
+        assertEquals(List.of(2L), ids(trie.suggest("a", 10)));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void testCachedTopMatchesFullScanAfterLikeChanges() {
+        Map<Long, Integer> likes = new HashMap<>();
+        TitleTrie trie = new TitleTrie(id -> likes.getOrDefault(id, 0));
+        Map<Long, String> names = new HashMap<>();
+        Random random = new Random(7);
+        for (long id = 1; id <= 300; id++) {
+            String name = "film " + random.nextInt(40) + " " + id;
+            names.put(id, name);
+            trie.put(id, name);
+        }
+        for (int i = 0; i < 5000; i++) {
+            long id = 1 + random.nextInt(300);
+            boolean increased = random.nextInt(3) > 0 || likes.getOrDefault(id, 0) == 0;
+            likes.merge(id, increased ? 1 : -1, Integer::sum);
+            trie.likesChanged(id, increased);
+        }
+        for (String prefix : List.of("f", "film 1", "film 2", "film 33 ", "film 7")) {
+            List<Long> expected = names.entrySet().stream()
+                    .filter(entry -> entry.getValue().startsWith(prefix))
+                    .map(Map.Entry::getKey)
+                    .sorted(Comparator.<Long>comparingInt(id -> -likes.getOrDefault(id, 0))
+                            .thenComparing(Comparator.naturalOrder()))
+                    .limit(TitleTrie.MAX_SUGGESTIONS)
+                    .collect(Collectors.toList());
+            assertEquals(expected, ids(trie.suggest(prefix, TitleTrie.MAX_SUGGESTIONS)), prefix);
+        }
+    }
+}